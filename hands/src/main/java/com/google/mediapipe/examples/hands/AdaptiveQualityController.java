@@ -0,0 +1,233 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import android.util.Log;
+
+import com.google.mediapipe.examples.hands.HandsResultGlRenderer.OverlayDetail;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the Hands pipeline inside an end-to-end frame latency budget.
+ *
+ * <p>The controller walks a fixed ladder of {@link Level}s. The cheapest knobs (overlay detail,
+ * inference rate) come first so that most adjustments do not need a pipeline restart; max hands,
+ * model complexity and camera resolution are only given up when those are not enough. Degrading is
+ * fast, recovering needs sustained headroom, and every transition is followed by a cooldown so the
+ * controller never oscillates between two levels.
+ */
+public class AdaptiveQualityController {
+  private static final String TAG = "AdaptiveQuality";
+
+  /** One step on the quality ladder. */
+  public static final class Level {
+    public final String name;
+    public final int maxNumHands;
+    public final int modelComplexity;
+    /** Camera input resolution relative to the preview surface size. */
+    public final float resolutionScale;
+    /** Classify one out of every {@code inferenceStride} results. */
+    public final int inferenceStride;
+    public final OverlayDetail overlayDetail;
+
+    Level(
+            String name,
+            int maxNumHands,
+            int modelComplexity,
+            float resolutionScale,
+            int inferenceStride,
+            OverlayDetail overlayDetail) {
+      this.name = name;
+      this.maxNumHands = maxNumHands;
+      this.modelComplexity = modelComplexity;
+      this.resolutionScale = resolutionScale;
+      this.inferenceStride = inferenceStride;
+      this.overlayDetail = overlayDetail;
+    }
+
+    /** Whether switching between the two levels needs a new Hands graph or camera session. */
+    public boolean requiresRestart(Level other) {
+      return maxNumHands != other.maxNumHands
+              || modelComplexity != other.modelComplexity
+              || resolutionScale != other.resolutionScale;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+              "%s(hands=%d, complexity=%d, resolution=%.2f, stride=%d, overlay=%s)",
+              name, maxNumHands, modelComplexity, resolutionScale, inferenceStride, overlayDetail);
+    }
+  }
+
+  /** Ordered from best quality to cheapest. */
+  public static final Level[] LEVELS = {
+          new Level("full", 2, 1, 1.0f, 1, OverlayDetail.FULL),
+          new Level("reduced-overlay", 2, 1, 1.0f, 1, OverlayDetail.REDUCED),
+          new Level("half-rate", 2, 1, 1.0f, 2, OverlayDetail.REDUCED),
+          new Level("single-hand", 1, 1, 0.75f, 2, OverlayDetail.REDUCED),
+          new Level("lite", 1, 0, 0.75f, 3, OverlayDetail.MINIMAL),
+          new Level("minimum", 1, 0, 0.5f, 4, OverlayDetail.MINIMAL),
+  };
+
+  /** Receives level transitions. Called on the thread that reported the triggering frame. */
+  public interface Listener {
+    void onLevelChanged(Level previous, Level current);
+  }
+
+  private static final int PENDING_FRAMES = 64;
+  private static final float EWMA_ALPHA = 0.1f;
+  // Recover only once latency sits well below the budget, otherwise the next level up overshoots.
+  private static final float RECOVER_RATIO = 0.6f;
+  private static final int DEGRADE_FRAMES = 15;
+  private static final int RECOVER_FRAMES = 150;
+  private static final long COOLDOWN_NANOS = 2_000_000_000L;
+
+  private final float budgetMs;
+  private final Listener listener;
+
+  // Send times of in-flight frames keyed by their packet timestamp, as a small ring buffer.
+  private final long[] pendingTimestampsUs = new long[PENDING_FRAMES];
+  private final long[] pendingSendNanos = new long[PENDING_FRAMES];
+  private int pendingNext;
+
+  private int levelIndex;
+  private float ewmaMs = -1f;
+  private int overBudgetFrames;
+  private int underBudgetFrames;
+  private long cooldownUntilNanos;
+  private long frameCounter;
+  private volatile boolean thermalThrottling;
+
+  public AdaptiveQualityController(float budgetMs, Listener listener) {
+    this.budgetMs = budgetMs;
+    this.listener = listener;
+    Arrays.fill(pendingSendNanos, -1L);
+  }
+
+  public synchronized Level currentLevel() {
+    return LEVELS[levelIndex];
+  }
+
+  /** Smoothed end-to-end latency in milliseconds, or -1 before the first measured frame. */
+  public synchronized float smoothedLatencyMs() {
+    return ewmaMs;
+  }
+
+  /** Records that the frame with the given timestamp was handed to the Hands graph. */
+  public synchronized void onFrameSent(long timestampUs) {
+    pendingTimestampsUs[pendingNext] = timestampUs;
+    pendingSendNanos[pendingNext] = System.nanoTime();
+    pendingNext = (pendingNext + 1) % PENDING_FRAMES;
+  }
+
+  /** Whether the result currently being handled should go through the classifier. */
+  public synchronized boolean shouldClassify() {
+    return frameCounter++ % currentLevel().inferenceStride == 0;
+  }
+
+  /**
+   * Records that every stage downstream of the graph has finished with the frame, and steps the
+   * ladder if the smoothed latency has been out of bounds for long enough.
+   */
+  public void onFrameProcessed(long timestampUs) {
+    Level previous;
+    Level current;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long sentNanos = takeSendTime(timestampUs);
+      if (sentNanos < 0) {
+        return;
+      }
+      float latencyMs = (now - sentNanos) / 1_000_000f;
+      ewmaMs = ewmaMs < 0 ? latencyMs : ewmaMs + EWMA_ALPHA * (latencyMs - ewmaMs);
+      if (now < cooldownUntilNanos) {
+        return;
+      }
+      if (ewmaMs > budgetMs || thermalThrottling) {
+        overBudgetFrames++;
+        underBudgetFrames = 0;
+      } else if (ewmaMs < budgetMs * RECOVER_RATIO) {
+        underBudgetFrames++;
+        overBudgetFrames = 0;
+      } else {
+        overBudgetFrames = 0;
+        underBudgetFrames = 0;
+      }
+
+      int next = levelIndex;
+      if (overBudgetFrames >= DEGRADE_FRAMES && levelIndex < LEVELS.length - 1) {
+        next = levelIndex + 1;
+      } else if (underBudgetFrames >= RECOVER_FRAMES && levelIndex > 0) {
+        next = levelIndex - 1;
+      }
+      if (next == levelIndex) {
+        return;
+      }
+      previous = LEVELS[levelIndex];
+      current = LEVELS[next];
+      Log.i(
+              TAG,
+              String.format(
+                      "%s -> %s (smoothed latency %.1f ms, budget %.1f ms%s)",
+                      previous.name,
+                      current.name,
+                      ewmaMs,
+                      budgetMs,
+                      thermalThrottling ? ", thermal throttling" : ""));
+      levelIndex = next;
+      overBudgetFrames = 0;
+      underBudgetFrames = 0;
+      // The old latency history describes the previous level; start afresh after the cooldown.
+      ewmaMs = -1f;
+      cooldownUntilNanos = now + COOLDOWN_NANOS;
+    }
+    if (listener != null) {
+      listener.onLevelChanged(previous, current);
+    }
+  }
+
+  /**
+   * Reports the device thermal state. While throttling the controller treats every frame as over
+   * budget, so it keeps stepping down and never recovers.
+   */
+  public void onThermalThrottling(boolean throttling) {
+    if (thermalThrottling != throttling) {
+      Log.i(TAG, "Thermal throttling " + (throttling ? "started" : "ended"));
+    }
+    thermalThrottling = throttling;
+  }
+
+  /** Forgets in-flight frames, e.g. after the pipeline has been torn down. */
+  public synchronized void reset() {
+    Arrays.fill(pendingSendNanos, -1L);
+    ewmaMs = -1f;
+    overBudgetFrames = 0;
+    underBudgetFrames = 0;
+    cooldownUntilNanos = System.nanoTime() + COOLDOWN_NANOS;
+  }
+
+  private long takeSendTime(long timestampUs) {
+    for (int i = 0; i < PENDING_FRAMES; i++) {
+      if (pendingTimestampsUs[i] == timestampUs && pendingSendNanos[i] >= 0) {
+        long sent = pendingSendNanos[i];
+        pendingSendNanos[i] = -1L;
+        return sent;
+      }
+    }
+    return -1L;
+  }
+}
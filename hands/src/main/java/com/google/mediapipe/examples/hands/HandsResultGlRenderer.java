@@ -32,7 +32,8 @@ import android.widget.Toast;
 
 import androidx.fragment.app.FragmentPagerAdapter;
 
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.LandmarkFrame;
 import com.google.mediapipe.solutioncore.ResultGlRenderer;
 import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsResult;
@@ -47,12 +48,22 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.channels.FileChannel;
-import java.util.List;
+import java.util.ArrayDeque;
 import androidx.appcompat.app.AppCompatActivity;
 
 /** A custom implementation of {@link ResultGlRenderer} to render {@link HandsResult}. */
 public class HandsResultGlRenderer extends AppCompatActivity implements ResultGlRenderer<HandsResult> {
 
+  /** How much of each hand is drawn on top of the camera image. */
+  public enum OverlayDetail {
+    /** Connections, landmarks and hollow circles around the landmarks. */
+    FULL,
+    /** Connections and landmarks. */
+    REDUCED,
+    /** Connections only. */
+    MINIMAL,
+  }
+
   private static final String TAG = "HandsResultGlRenderer";
   private static final float[] LEFT_HAND_CONNECTION_COLOR = new float[] {0.2f, 1f, 0.2f, 1f};
   private static final float[] RIGHT_HAND_CONNECTION_COLOR = new float[] {1f, 0.2f, 0.2f, 1f};
@@ -64,6 +75,8 @@ public class HandsResultGlRenderer extends AppCompatActivity implements ResultGl
   private static final float[] RIGHT_HAND_LANDMARK_COLOR = new float[] {0.2f, 1f, 0.2f, 1f};
   private static final float LANDMARK_RADIUS = 0.008f;
   private static final int NUM_SEGMENTS = 120;
+  // Results queued for rendering ahead of the one on screen; older frames are dropped.
+  private static final int MAX_PENDING_FRAMES = 3;
   private static final String VERTEX_SHADER =
           "uniform mat4 uProjectionMatrix;\n"
                   + "attribute vec4 vPosition;\n"
@@ -81,6 +94,9 @@ public class HandsResultGlRenderer extends AppCompatActivity implements ResultGl
   private int positionHandle;
   private int projectionMatrixHandle;
   private int colorHandle;
+  private volatile OverlayDetail overlayDetail = OverlayDetail.FULL;
+  // Frames not yet rendered, oldest first, each retained until a newer result is rendered.
+  private final ArrayDeque<LandmarkFrame> frames = new ArrayDeque<>(MAX_PENDING_FRAMES);
 
   private int loadShader(int type, String shaderCode) {
     int shader = GLES20.glCreateShader(type);
@@ -89,6 +105,34 @@ public class HandsResultGlRenderer extends AppCompatActivity implements ResultGl
     return shader;
   }
 
+  /** Sets the overlay detail used from the next rendered frame on. */
+  public void setOverlayDetail(OverlayDetail overlayDetail) {
+    this.overlayDetail = overlayDetail;
+  }
+
+  /**
+   * Adds the landmarks of a result that is about to be rendered. The renderer retains the frame and
+   * draws it with the {@link HandsResult} of the same timestamp, so the overlay never lags behind
+   * or runs ahead of the camera image. Only the newest few frames are kept.
+   */
+  public void addLandmarkFrame(LandmarkFrame next) {
+    LandmarkFrame dropped = null;
+    synchronized (this) {
+      if (frames.size() == MAX_PENDING_FRAMES) {
+        dropped = frames.pollFirst();
+      }
+      frames.addLast(next.retain());
+    }
+    if (dropped != null) {
+      dropped.release();
+    }
+  }
+
+  /** Releases every frame that was added and not rendered yet. */
+  public void clearLandmarkFrames() {
+    releaseBefore(Long.MAX_VALUE);
+  }
+
   @Override
   public void setupRendering() {
     program = GLES20.glCreateProgram();
@@ -111,23 +155,63 @@ public class HandsResultGlRenderer extends AppCompatActivity implements ResultGl
     GLES20.glUniformMatrix4fv(projectionMatrixHandle, 1, false, projectionMatrix, 0);
     GLES20.glLineWidth(CONNECTION_THICKNESS);
 
-    int numHands = result.multiHandLandmarks().size();
-    for (int i = 0; i < numHands; ++i) {
-      boolean isLeftHand = result.multiHandedness().get(i).getLabel().equals("Left");
+    // Frames older than this result will not be rendered any more.
+    releaseBefore(result.timestamp());
+    LandmarkFrame current;
+    synchronized (this) {
+      current = frames.peekFirst();
+      if (current == null || current.timestampUs != result.timestamp()) {
+        return;
+      }
+      current.retain();
+    }
+    try {
+      drawHands(current);
+    } finally {
+      current.release();
+    }
+  }
+
+  private void releaseBefore(long timestampUs) {
+    while (true) {
+      LandmarkFrame oldest;
+      synchronized (this) {
+        oldest = frames.peekFirst();
+        if (oldest == null || oldest.timestampUs >= timestampUs) {
+          return;
+        }
+        frames.pollFirst();
+      }
+      oldest.release();
+    }
+  }
+
+  private void drawHands(LandmarkFrame current) {
+    OverlayDetail detail = overlayDetail;
+    float[] landmarks = current.landmarks;
+    for (int i = 0; i < current.numHands; ++i) {
+      boolean isLeftHand = current.leftHand[i];
+      int offset = i * AngleFeatures.LANDMARK_SIZE;
       drawConnections(
-              result.multiHandLandmarks().get(i).getLandmarkList(),
+              landmarks,
+              offset,
               isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
-//              System.out.print(result.multiHandLandmarks().get(i).getLandmarkList());
-      for (NormalizedLandmark landmark : result.multiHandLandmarks().get(i).getLandmarkList()) {
+      if (detail == OverlayDetail.MINIMAL) {
+        continue;
+      }
+      for (int k = offset; k < offset + AngleFeatures.LANDMARK_SIZE; k += 3) {
         // Draws the landmark.
         drawCircle(
-                landmark.getX(),
-                landmark.getY(),
+                landmarks[k],
+                landmarks[k + 1],
                 isLeftHand ? LEFT_HAND_LANDMARK_COLOR : RIGHT_HAND_LANDMARK_COLOR);
+        if (detail == OverlayDetail.REDUCED) {
+          continue;
+        }
         // Draws a hollow circle around the landmark.
         drawHollowCircle(
-                landmark.getX(),
-                landmark.getY(),
+                landmarks[k],
+                landmarks[k + 1],
                 isLeftHand ? LEFT_HAND_HOLLOW_CIRCLE_COLOR : RIGHT_HAND_HOLLOW_CIRCLE_COLOR);
       }
     }
@@ -140,14 +224,15 @@ public class HandsResultGlRenderer extends AppCompatActivity implements ResultGl
    */
   public void release() {
     GLES20.glDeleteProgram(program);
+    clearLandmarkFrames();
   }
 
-  private void drawConnections(List<NormalizedLandmark> handLandmarkList, float[] colorArray) {
+  private void drawConnections(float[] landmarks, int offset, float[] colorArray) {
     GLES20.glUniform4fv(colorHandle, 1, colorArray, 0);
     for (Hands.Connection c : Hands.HAND_CONNECTIONS) {
-      NormalizedLandmark start = handLandmarkList.get(c.start());
-      NormalizedLandmark end = handLandmarkList.get(c.end());
-      float[] vertex = {start.getX(), start.getY(), end.getX(), end.getY()};
+      int start = offset + c.start() * 3;
+      int end = offset + c.end() * 3;
+      float[] vertex = {landmarks[start], landmarks[start + 1], landmarks[end], landmarks[end + 1]};
       FloatBuffer vertexBuffer =
               ByteBuffer.allocateDirect(vertex.length * 4)
                       .order(ByteOrder.nativeOrder())
@@ -30,8 +30,8 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.widget.AppCompatImageView;
-import com.google.mediapipe.formats.proto.LandmarkProto;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.LandmarkFrame;
 import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsResult;
 
@@ -43,7 +43,6 @@ import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
-import java.util.List;
 
 /** An ImageView implementation for displaying {@link HandsResult}. */
 public class HandsResultImageView extends AppCompatImageView {
@@ -70,9 +69,10 @@ public class HandsResultImageView extends AppCompatImageView {
    *
    * @param result a {@link HandsResult} object that contains the solution outputs and the input
    *     {@link Bitmap}.
+   * @param frame the landmarks of {@code result}; only read during the call.
    */
-  public void setHandsResult(HandsResult result) throws URISyntaxException {
-    if (result == null) {
+  public void setHandsResult(HandsResult result, LandmarkFrame frame) throws URISyntaxException {
+    if (result == null || frame == null) {
       return;
     }
     Bitmap bmInput = result.inputBitmap();
@@ -82,11 +82,11 @@ public class HandsResultImageView extends AppCompatImageView {
     Canvas canvas = new Canvas(latest);
 
     canvas.drawBitmap(bmInput, new Matrix(), null);
-    int numHands = result.multiHandLandmarks().size();
-    for (int i = 0; i < numHands; ++i) {
+    for (int i = 0; i < frame.numHands; ++i) {
       drawLandmarksOnCanvas(
-          result.multiHandLandmarks().get(i).getLandmarkList(),
-          result.multiHandedness().get(i).getLabel().equals("Left"),
+          frame.landmarks,
+          i * AngleFeatures.LANDMARK_SIZE,
+          frame.leftHand[i],
           canvas,
           width,
           height);
@@ -108,7 +108,8 @@ public class HandsResultImageView extends AppCompatImageView {
   }
 
   private void drawLandmarksOnCanvas(
-      List<NormalizedLandmark> handLandmarkList,
+      float[] landmarks,
+      int offset,
       boolean isLeftHand,
       Canvas canvas,
       int width,
@@ -119,31 +120,32 @@ public class HandsResultImageView extends AppCompatImageView {
       connectionPaint.setColor(
           isLeftHand ? LEFT_HAND_CONNECTION_COLOR : RIGHT_HAND_CONNECTION_COLOR);
       connectionPaint.setStrokeWidth(CONNECTION_THICKNESS);
-      NormalizedLandmark start = handLandmarkList.get(c.start());
-      NormalizedLandmark end = handLandmarkList.get(c.end());
+      int start = offset + c.start() * 3;
+      int end = offset + c.end() * 3;
       canvas.drawLine(
-          start.getX() * width,
-          start.getY() * height,
-          end.getX() * width,
-          end.getY() * height,
+          landmarks[start] * width,
+          landmarks[start + 1] * height,
+          landmarks[end] * width,
+          landmarks[end + 1] * height,
           connectionPaint);
     }
     Paint landmarkPaint = new Paint();
     landmarkPaint.setColor(isLeftHand ? LEFT_HAND_LANDMARK_COLOR : RIGHT_HAND_LANDMARK_COLOR);
     // Draws landmarks.
-    for (LandmarkProto.NormalizedLandmark landmark : handLandmarkList) {
+    int endOffset = offset + AngleFeatures.LANDMARK_SIZE;
+    for (int k = offset; k < endOffset; k += 3) {
       canvas.drawCircle(
-          landmark.getX() * width, landmark.getY() * height, LANDMARK_RADIUS, landmarkPaint);
+          landmarks[k] * width, landmarks[k + 1] * height, LANDMARK_RADIUS, landmarkPaint);
     }
     // Draws hollow circles around landmarks.
     landmarkPaint.setColor(
         isLeftHand ? LEFT_HAND_HOLLOW_CIRCLE_COLOR : RIGHT_HAND_HOLLOW_CIRCLE_COLOR);
     landmarkPaint.setStrokeWidth(HOLLOW_CIRCLE_WIDTH);
     landmarkPaint.setStyle(Paint.Style.STROKE);
-    for (LandmarkProto.NormalizedLandmark landmark : handLandmarkList) {
+    for (int k = offset; k < endOffset; k += 3) {
       canvas.drawCircle(
-          landmark.getX() * width,
-          landmark.getY() * height,
+          landmarks[k] * width,
+          landmarks[k + 1] * height,
           LANDMARK_RADIUS + HOLLOW_CIRCLE_WIDTH,
           landmarkPaint);
     }
@@ -0,0 +1,88 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.LandmarkFrame;
+import com.google.mediapipe.formats.proto.ClassificationProto.Classification;
+import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
+import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.solutions.hands.HandsResult;
+
+import java.util.List;
+
+/**
+ * Copies the landmarks, handedness and world landmarks of a {@link HandsResult} into a pooled
+ * {@link LandmarkFrame}, so the protos are walked once per frame and every later stage reads flat
+ * arrays. Lists are read by index, which avoids allocating an iterator per hand.
+ */
+public class LandmarkFrameAdapter {
+  private static final String LEFT = "Left";
+
+  private final LandmarkFrame.Pool pool;
+
+  /** @param poolSize frames kept for reuse; one per stage that may hold a frame is enough. */
+  public LandmarkFrameAdapter(int poolSize) {
+    pool = new LandmarkFrame.Pool(poolSize);
+  }
+
+  /** Returns a filled frame with one reference, which the caller must release. */
+  public LandmarkFrame copy(HandsResult result) {
+    LandmarkFrame frame = pool.acquire();
+    frame.timestampUs = result.timestamp();
+    int numHands = Math.min(result.multiHandLandmarks().size(), LandmarkFrame.MAX_HANDS);
+    List<Classification> handedness = result.multiHandedness();
+    for (int hand = 0; hand < numHands; hand++) {
+      List<NormalizedLandmark> points = result.multiHandLandmarks().get(hand).getLandmarkList();
+      int k = hand * AngleFeatures.LANDMARK_SIZE;
+      for (int i = 0; i < AngleFeatures.NUM_LANDMARKS; i++) {
+        NormalizedLandmark point = points.get(i);
+        frame.landmarks[k++] = point.getX();
+        frame.landmarks[k++] = point.getY();
+        frame.landmarks[k++] = point.getZ();
+      }
+      if (hand < handedness.size()) {
+        Classification classification = handedness.get(hand);
+        frame.leftHand[hand] = LEFT.equals(classification.getLabel());
+        frame.handednessScore[hand] = classification.getScore();
+      } else {
+        frame.leftHand[hand] = false;
+        frame.handednessScore[hand] = 0f;
+      }
+    }
+    frame.numHands = numHands;
+
+    int numWorldHands = result.multiHandWorldLandmarks().size();
+    frame.hasWorldLandmarks = numHands > 0 && numWorldHands >= numHands;
+    if (frame.hasWorldLandmarks) {
+      for (int hand = 0; hand < numHands; hand++) {
+        List<Landmark> points = result.multiHandWorldLandmarks().get(hand).getLandmarkList();
+        int k = hand * AngleFeatures.LANDMARK_SIZE;
+        for (int i = 0; i < AngleFeatures.NUM_LANDMARKS; i++) {
+          Landmark point = points.get(i);
+          frame.worldLandmarks[k++] = point.getX();
+          frame.worldLandmarks[k++] = point.getY();
+          frame.worldLandmarks[k++] = point.getZ();
+        }
+      }
+    }
+    return frame;
+  }
+
+  /** Frames allocated so far; stays flat once the pipeline is warm. */
+  public int framesCreated() {
+    return pool.created();
+  }
+}
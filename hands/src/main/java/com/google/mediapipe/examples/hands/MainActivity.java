@@ -21,7 +21,9 @@ import android.content.res.AssetFileDescriptor;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.PowerManager;
 import android.provider.MediaStore;
 import androidx.appcompat.app.AppCompatActivity;
 import android.util.Log;
@@ -39,9 +41,25 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
 import com.google.firebase.database.ValueEventListener;
-import com.google.mediapipe.formats.proto.LandmarkProto;
-import com.google.mediapipe.formats.proto.LandmarkProto.Landmark;
-import com.google.mediapipe.formats.proto.LandmarkProto.NormalizedLandmark;
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.AngleKernel;
+import com.google.mediapipe.examples.hands.recognition.CalibrationSession;
+import com.google.mediapipe.examples.hands.recognition.CascadeClassifier;
+import com.google.mediapipe.examples.hands.recognition.Autocomplete;
+import com.google.mediapipe.examples.hands.recognition.Classifier;
+import com.google.mediapipe.examples.hands.recognition.ConfusionCosts;
+import com.google.mediapipe.examples.hands.recognition.FuzzyCompleter;
+import com.google.mediapipe.examples.hands.recognition.Jamo;
+import com.google.mediapipe.examples.hands.recognition.JamoLanguageModel;
+import com.google.mediapipe.examples.hands.recognition.LandmarkFrame;
+import com.google.mediapipe.examples.hands.recognition.MappedLexicon;
+import com.google.mediapipe.examples.hands.recognition.NearestCentroidClassifier;
+import com.google.mediapipe.examples.hands.recognition.PersonalIndex;
+import com.google.mediapipe.examples.hands.recognition.PersonalizedClassifier;
+import com.google.mediapipe.examples.hands.recognition.RecognitionSession;
+import com.google.mediapipe.examples.hands.recognition.RecordedFrames;
+import com.google.mediapipe.examples.hands.recognition.SwappableClassifier;
+import com.google.mediapipe.framework.TextureFrame;
 import com.google.mediapipe.solutioncore.CameraInput;
 import com.google.mediapipe.solutioncore.SolutionGlSurfaceView;
 import com.google.mediapipe.solutioncore.VideoInput;
@@ -50,32 +68,90 @@ import com.google.mediapipe.solutions.hands.Hands;
 import com.google.mediapipe.solutions.hands.HandsOptions;
 import com.google.mediapipe.solutions.hands.HandsResult;
 
-import org.tensorflow.lite.Interpreter;
-
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Main activity of MediaPipe Hands app. */
 public class MainActivity extends AppCompatActivity {
   private static final String TAG = "MainActivity";
   private static final String MODEL_NAME = "finger_model.tflite";
+  // 선택: 1단계 nearest-centroid 분류기 (CascadeEvaluation 으로 생성). 없으면 모델만 사용
+  // filesDir 에 있으면 APK 에 포함된 것(src/main/recordings 로 빌드 때 생성)보다 우선
+  private static final String CENTROIDS_NAME = "finger_centroids.bin";
+  // 보정할 때마다 샘플과 모델 출력을 filesDir 에 추가 (CascadeEvaluation --train 입력)
+  private static final String RECORDING_NAME = "recorded_frames.csv";
+  private static final int STATS_LOG_INTERVAL = 300;
+  // filesDir/models 에 새 .tflite 를 넣으면 재시작 없이 교체 (파일 이름이 모델 버전)
+  private static final String MODELS_DIR = "models";
+  private static final String BUNDLED_MODEL_VERSION = "bundled";
+  // 빌드 시 src/main/lexicon/words.txt 에서 생성되는 자동완성 사전 (압축 없이 APK 에 포함)
+  private static final String LEXICON_NAME = "words.lex";
+  // 선택: 모델의 자모 혼동 횟수 (CascadeEvaluation --confusion 으로 생성). 없으면 기본 비용 사용
+  private static final String CONFUSION_NAME = "jamo_confusion.txt";
+  // 단어 목록으로 만든 자모 n-gram 모델: 앞에 확정된 글자로 비슷한 손 모양 중 하나를 고름
+  private static final String LANGUAGE_MODEL_NAME = "jamo_lm.bin";
+  private static final float LANGUAGE_MODEL_WEIGHT = 0.5f;
+  // 각도 계산에 근사 acos/atan 사용 (정확한 계산과 0.03도 이내 차이, 약 10배 빠름)
+  private static final AngleKernel.Accuracy FEATURE_ACCURACY = AngleKernel.Accuracy.HIGH;
+  // 사용자별 보정 샘플 (filesDir 에 저장, 다음 실행 때 그대로 매핑)
+  private static final String PERSONAL_INDEX_NAME = "personal_index.bin";
+  private static final int CALIBRATION_SAMPLES = 5;
+  private static final int CALIBRATION_SETTLE_FRAMES = 15;
+  private static final int CALIBRATION_SAMPLE_INTERVAL = 3;
   public static String data;
-  public String[] gesture = {"ㄱ",  "ㄴ",  "ㄷ",  "ㄹ",  "ㅁ",  "ㅂ",  "ㅅ",  "ㅇ",
-          "ㅈ",  "ㅊ",  "ㅋ",  "ㅌ",  "ㅍ",  "ㅎ",  "ㅏ",
-          "ㅑ",  "ㅓ",  "ㅕ",  "ㅗ",  "ㅛ",  "ㅜ",  "ㅠ",
-          "ㅡ",  "ㅣ",  "ㅐ",  "ㅒ",  "ㅔ",  "ㅖ",  "ㅢ",  "ㅚ",  "ㅟ"};
   private FirebaseDatabase database = FirebaseDatabase.getInstance();
   private DatabaseReference myRef = database.getReference();
 
   private Hands hands;
   // Run the pipeline and the model inference on GPU or CPU.
   private static final boolean RUN_ON_GPU = true;
-  //Classifier cls; /***********************/
+  // End-to-end latency budget per camera frame, from hands.send() until classification is done.
+  private static final float FRAME_LATENCY_BUDGET_MS = 66f;
+  // 손이 3초 동안 안 보이면 대기 모드: 250ms 에 한 프레임만 손 검출 (손이 나오면 바로 전체 속도)
+  private static final long PRESENCE_IDLE_AFTER_MS = 3000;
+  private static final long PRESENCE_IDLE_INTERVAL_MS = 250;
+  // 특징 추출 -> 분류 -> 글자 확정 (recognition 모듈)
+  private RecognitionSession recognitionSession;
+  private CascadeClassifier cascadeClassifier;
+  private SwappableClassifier modelClassifier;
+  private ModelRegistry modelRegistry;
+  private long classifiedFrames;
+  // HandsResult 를 한 번만 읽어 렌더러, 분류, 로그가 같은 배열을 공유 (렌더러가 하나 더 잡고 있음)
+  private final LandmarkFrameAdapter landmarkAdapter = new LandmarkFrameAdapter(4);
+  private PersonalIndex personalIndex;
+  // 보정 버튼은 UI 스레드에서 요청만 하고, 실제 보정은 결과 스레드에서 진행
+  private volatile boolean calibrationRequested;
+  private volatile boolean calibrationSkipRequested;
+  private volatile boolean calibrationCancelRequested;
+  // 보정 중 여부 (UI 스레드에서 버튼 동작을 고를 때 사용)
+  private volatile boolean calibrating;
+  private CalibrationSession calibration;
+  // 이번 보정에서 기록한 프레임 (RecordedFrames 형식, 보정이 끝나면 파일에 추가)
+  private StringWriter calibrationRecording;
+  private final float[] recordedProbabilities = new float[Jamo.COUNT];
+  private final float[] calibrationFeatures = new float[AngleFeatures.SIZE];
+  // 보정 샘플 저장 (fsync 가 있어 결과 스레드에서 하지 않음)
+  private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor();
+  private MappedLexicon lexicon;
+  private final byte[] prefix = new byte[1];
+  // 자동완성 버튼을 마지막으로 바꾼 요청 번호 (늦게 도착한 데이터베이스 결과가 덮어쓰지 않도록)
+  private volatile int suggestionVersion;
+  // del / clear 버튼도 결과 스레드에서 처리
+  private volatile boolean deleteRequested;
+  private volatile boolean clearRequested;
 
   private enum InputSource {
     UNKNOWN,
@@ -94,11 +170,25 @@ public class MainActivity extends AppCompatActivity {
   private CameraInput cameraInput;
 
   private SolutionGlSurfaceView<HandsResult> glSurfaceView;
+  private HandsResultGlRenderer resultRenderer;
+  private AdaptiveQualityController qualityController;
+  // onDestroy 에서 해제 (등록된 채로 두면 PowerManager 가 액티비티를 계속 잡고 있음)
+  private PowerManager.OnThermalStatusChangedListener thermalStatusListener;
+  private final PresenceGate presenceGate =
+          new PresenceGate(PRESENCE_IDLE_AFTER_MS, PRESENCE_IDLE_INTERVAL_MS);
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
     super.onCreate(savedInstanceState);
     setContentView(R.layout.activity_main);
+    qualityController =
+            new AdaptiveQualityController(FRAME_LATENCY_BUDGET_MS, this::onQualityLevelChanged);
+    setupThermalStatusListener();
+    lexicon = loadLexicon();
+    recognitionSession = createRecognitionSession(MODEL_NAME);
+    if (modelClassifier != null) {
+      modelRegistry = new ModelRegistry(new File(getFilesDir(), MODELS_DIR), modelClassifier);
+    }
     setupStaticImageDemoUiComponents();
     //setupVideoDemoUiComponents();
     setupLiveDemoUiComponents();
@@ -107,10 +197,13 @@ public class MainActivity extends AppCompatActivity {
   @Override
   protected void onResume() {
     super.onResume();
+    if (modelRegistry != null) {
+      modelRegistry.loadLatest();
+    }
     if (inputSource == InputSource.CAMERA) {
       // Restarts the camera and the opengl surface rendering.
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
+      cameraInput.setNewFrameListener(this::sendCameraFrame);
       glSurfaceView.post(this::startCamera);
       glSurfaceView.setVisibility(View.VISIBLE);
     }
@@ -125,6 +218,25 @@ public class MainActivity extends AppCompatActivity {
     }
   }
 
+  @Override
+  protected void onDestroy() {
+    super.onDestroy();
+    removeThermalStatusListener();
+    // 분류 중인 프레임이 없도록 파이프라인을 먼저 닫음
+    if (hands != null) {
+      hands.close();
+    }
+    if (modelRegistry != null) {
+      modelRegistry.close();
+    }
+    if (modelClassifier != null) {
+      // 번들 모델과 교체된 모델(현재, 롤백용, 대기 중)을 모두 닫음
+      modelClassifier.close();
+    }
+    // 진행 중인 저장은 끝까지 진행
+    saveExecutor.shutdown();
+  }
+
   private Bitmap downscaleBitmap(Bitmap originalBitmap) {
     double aspectRatio = (double) originalBitmap.getWidth() / originalBitmap.getHeight();
     int width = imageView.getWidth();
@@ -213,25 +325,84 @@ public class MainActivity extends AppCompatActivity {
               stopCurrentPipeline();
               setupStreamingModePipeline(InputSource.CAMERA);
             });
+    // 길게 누르면 이전 모델로 되돌림 (현장 A/B 테스트용)
+    startCameraButton.setOnLongClickListener(
+            v -> {
+              boolean rolledBack = modelRegistry != null && modelRegistry.rollback();
+              Toast.makeText(
+                      this,
+                      rolledBack ? "이전 모델로 되돌림" : "되돌릴 모델 없음",
+                      Toast.LENGTH_SHORT)
+                      .show();
+              return true;
+            });
+
+    // 완료 버튼 클릭시 액티비티 전환
+    Button bt_com = findViewById(R.id.button_complete);
+    bt_com.setOnClickListener(new View.OnClickListener(){
+
+      @Override
+      public void onClick(View view){
+        Intent intent = new Intent(getApplicationContext(), resultActivity.class);
+        startActivity(intent);
+      }
+    });
+
+    // 보정 버튼: 자모를 순서대로 보여주고 사용자의 손 모양을 저장
+    // 보정 중에는 누르면 현재 글자 건너뛰기, 길게 누르면 보정 취소 (그때까지 저장한 글자는 유지)
+    Button calibrateButton = findViewById(R.id.button_calibrate);
+    calibrateButton.setOnClickListener(
+            v -> {
+              if (calibrating) {
+                calibrationSkipRequested = true;
+              } else {
+                calibrationRequested = true;
+              }
+            });
+    calibrateButton.setOnLongClickListener(
+            v -> {
+              if (!calibrating) {
+                return false;
+              }
+              calibrationCancelRequested = true;
+              return true;
+            });
+
+    Button deleteButton = findViewById(R.id.delete);
+    deleteButton.setOnClickListener(v -> deleteRequested = true);
+    Button clearButton = findViewById(R.id.clear);
+    clearButton.setOnClickListener(v -> clearRequested = true);
+    // enter 는 띄어쓰기: 다음 글자부터 새 단어로 인식
+    Button enterButton = findViewById(R.id.enter);
+    enterButton.setOnClickListener(
+            v -> {
+              TextView tv2 = findViewById(R.id.text_view2);
+              tv2.append(" ");
+              clearRequested = true;
+            });
   }
 
   /** Sets up core workflow for streaming mode. */
   private void setupStreamingModePipeline(InputSource inputSource) {
     this.inputSource = inputSource;
+    AdaptiveQualityController.Level level = qualityController.currentLevel();
+    qualityController.reset();
+    presenceGate.reset();
     // Initializes a new MediaPipe Hands solution instance in the streaming mode.
     hands =
             new Hands(
                     this,
                     HandsOptions.builder()
                             .setStaticImageMode(false)
-                            .setMaxNumHands(2)
+                            .setMaxNumHands(level.maxNumHands)
+                            .setModelComplexity(level.modelComplexity)
                             .setRunOnGpu(RUN_ON_GPU)
                             .build());
     hands.setErrorListener((message, e) -> Log.e(TAG, "MediaPipe Hands error:" + message));
 
     if (inputSource == InputSource.CAMERA) {
       cameraInput = new CameraInput(this);
-      cameraInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
+      cameraInput.setNewFrameListener(this::sendCameraFrame);
     } /*else if (inputSource == InputSource.VIDEO) {
       videoInput = new VideoInput(this);
       videoInput.setNewFrameListener(textureFrame -> hands.send(textureFrame));
@@ -240,15 +411,27 @@ public class MainActivity extends AppCompatActivity {
     // Initializes a new Gl surface view with a user-defined HandsResultGlRenderer.
     glSurfaceView =
             new SolutionGlSurfaceView<>(this, hands.getGlContext(), hands.getGlMajorVersion());
-    glSurfaceView.setSolutionResultRenderer(new HandsResultGlRenderer());
+    resultRenderer = new HandsResultGlRenderer();
+    resultRenderer.setOverlayDetail(level.overlayDetail);
+    glSurfaceView.setSolutionResultRenderer(resultRenderer);
     glSurfaceView.setRenderInputImage(true);
 
     hands.setResultListener(
             handsResult -> {
-              //logWristLandmark(handsResult, /*showPixelValues=*/ false);
-              glSurfaceView.setRenderData(handsResult);
-              glSurfaceView.requestRender();
-              makeAngle(handsResult);
+              LandmarkFrame landmarkFrame = landmarkAdapter.copy(handsResult);
+              try {
+                //logWristLandmark(handsResult, landmarkFrame, /*showPixelValues=*/ false);
+                resultRenderer.addLandmarkFrame(landmarkFrame);
+                glSurfaceView.setRenderData(handsResult);
+                glSurfaceView.requestRender();
+                presenceGate.onResult(landmarkFrame.timestampUs, landmarkFrame.numHands > 0);
+                if (qualityController.shouldClassify()) {
+                  makeAngle(landmarkFrame);
+                }
+                qualityController.onFrameProcessed(landmarkFrame.timestampUs);
+              } finally {
+                landmarkFrame.release();
+              }
             });
 
     // The runnable to start camera after the gl surface view is attached.
@@ -267,12 +450,69 @@ public class MainActivity extends AppCompatActivity {
   }
 
   private void startCamera() {
+    float scale = qualityController.currentLevel().resolutionScale;
     cameraInput.start(
             this,
             hands.getGlContext(),
             CameraInput.CameraFacing.FRONT,
-            glSurfaceView.getWidth(),
-            glSurfaceView.getHeight());
+            (int) (glSurfaceView.getWidth() * scale),
+            (int) (glSurfaceView.getHeight() * scale));
+  }
+
+  private void sendCameraFrame(TextureFrame textureFrame) {
+    if (!presenceGate.shouldSend(textureFrame.getTimestamp())) {
+      // 대기 모드에서 건너뛰는 프레임은 그래프 대신 여기서 카메라에 돌려줌
+      textureFrame.release();
+      return;
+    }
+    qualityController.onFrameSent(textureFrame.getTimestamp());
+    hands.send(textureFrame);
+  }
+
+  /** Applies a new quality level, restarting the camera pipeline when the level requires it. */
+  private void onQualityLevelChanged(
+          AdaptiveQualityController.Level previous, AdaptiveQualityController.Level current) {
+    Log.i(TAG, "Quality level changed to " + current);
+    if (resultRenderer != null) {
+      resultRenderer.setOverlayDetail(current.overlayDetail);
+    }
+    if (current.requiresRestart(previous)) {
+      runOnUiThread(
+              () -> {
+                if (inputSource != InputSource.CAMERA) {
+                  return;
+                }
+                stopCurrentPipeline();
+                setupStreamingModePipeline(InputSource.CAMERA);
+              });
+    }
+  }
+
+  /** Feeds the platform thermal status into the quality controller where it is available. */
+  private void setupThermalStatusListener() {
+    if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+      return;
+    }
+    PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+    if (powerManager == null) {
+      return;
+    }
+    thermalStatusListener =
+            status ->
+                    qualityController.onThermalThrottling(
+                            status >= PowerManager.THERMAL_STATUS_SEVERE);
+    powerManager.addThermalStatusListener(thermalStatusListener);
+  }
+
+  private void removeThermalStatusListener() {
+    if (thermalStatusListener == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+      return;
+    }
+    PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+    if (powerManager != null) {
+      powerManager.removeThermalStatusListener(thermalStatusListener);
+    }
+    thermalStatusListener = null;
   }
 
   private void stopCurrentPipeline() {
@@ -283,17 +523,23 @@ public class MainActivity extends AppCompatActivity {
     if (glSurfaceView != null) {
       glSurfaceView.setVisibility(View.GONE);
     }
+    if (resultRenderer != null) {
+      // 그리지 못한 프레임을 풀로 돌려줌
+      resultRenderer.clearLandmarkFrames();
+    }
     if (hands != null) {
       hands.close();
     }
   }
 
-  private void logWristLandmark(HandsResult result, boolean showPixelValues) {
-    if (result.multiHandLandmarks().isEmpty()) {
+  private void logWristLandmark(
+          HandsResult result, LandmarkFrame landmarkFrame, boolean showPixelValues) {
+    if (landmarkFrame.numHands == 0) {
       return;
     }
-    NormalizedLandmark wristLandmark =
-            result.multiHandLandmarks().get(0).getLandmarkList().get(HandLandmark.WRIST);
+    int wrist = LandmarkFrame.offset(0, HandLandmark.WRIST);
+    float x = landmarkFrame.landmarks[wrist];
+    float y = landmarkFrame.landmarks[wrist + 1];
     // For Bitmaps, show the pixel values. For texture inputs, show the normalized coordinates.
     if (showPixelValues) {
       int width = result.inputBitmap().getWidth();
@@ -302,235 +548,418 @@ public class MainActivity extends AppCompatActivity {
               TAG,
               String.format(
                       "MediaPipe Hand wrist coordinates (pixel values): x=%f, y=%f",
-                      wristLandmark.getX() * width, wristLandmark.getY() * height));
+                      x * width, y * height));
     } else {
       Log.i(
               TAG,
               String.format(
                       "MediaPipe Hand wrist normalized coordinates (value range: [0, 1]): x=%f, y=%f",
-                      wristLandmark.getX(), wristLandmark.getY()));
+                      x, y));
     }
-    if (result.multiHandWorldLandmarks().isEmpty()) {
+    if (!landmarkFrame.hasWorldLandmarks) {
       return;
     }
-    Landmark wristWorldLandmark =
-            result.multiHandWorldLandmarks().get(0).getLandmarkList().get(HandLandmark.WRIST);
     Log.i(
             TAG,
             String.format(
                     "MediaPipe Hand wrist world coordinates (in meters with the origin at the hand's"
                             + " approximate geometric center): x=%f m, y=%f m, z=%f m",
-                    wristWorldLandmark.getX(), wristWorldLandmark.getY(), wristWorldLandmark.getZ()));
+                    landmarkFrame.worldLandmarks[wrist],
+                    landmarkFrame.worldLandmarks[wrist + 1],
+                    landmarkFrame.worldLandmarks[wrist + 2]));
   }
 
-  private void makeAngle(HandsResult handsresult) { //각도구하는 함수
+  private void makeAngle(LandmarkFrame landmarkFrame) { //각도구하는 함수
 
-    if (handsresult == null) {
+    if (landmarkFrame == null || recognitionSession == null) {
       return;
     }
-    float[][] vertices = new float[21][3];
-
-    int k = 0;
-    int numHands = handsresult.multiHandLandmarks().size();
-    for (int i = 0; i < numHands; ++i) {
-      for (LandmarkProto.NormalizedLandmark pointLandmark : handsresult.multiHandLandmarks().get(i).getLandmarkList()) {
-        vertices[k][0] = pointLandmark.getX();
-        vertices[k][1] = pointLandmark.getY();
-        vertices[k][2] = pointLandmark.getZ();
-        k += 1;
+    // 첫 번째 손의 21개 점만 사용 (x,y,z 순서, LandmarkFrame 에 이미 복사됨)
+    int numHands = landmarkFrame.numHands;
+    if (deleteRequested || clearRequested) {
+      if (clearRequested) {
+        recognitionSession.decoder().clear();
+      } else {
+        recognitionSession.decoder().deleteLast();
       }
-    }
-
-    float[][] joint = new float[21][3]; // 21개 점의 x,y,z의 좌표
-    float[][] v1 = new float[20][3]; //v1_n
-    float[][] v2 = new float[20][3]; //v2_n
-    float[][] v = new float[20][3]; //v2-v1 길이
-    float[][] v1_new = new float[15][3];
-    float[][] v2_new = new float[15][3];
-    int[] compareV1 = {0, 1, 2, 4, 5, 6, 7, 8, 9, 10, 12, 13, 14, 16, 17}; //15개  노말라이즈해서 크기 1의 벡터가 나오게 됨.
-    int[] compareV2 = {1, 2, 3, 5, 6, 7, 9, 10, 11, 13, 14, 15, 17, 18, 19}; //15개
-    int[] v1_n = {0, 1, 2, 3, 0, 5, 6, 7, 0, 9, 10, 11, 0, 13, 14, 15, 0, 17, 18, 19}; //20개
-    int[] v2_n = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20}; //20개
-
-    for (int i = 0; i < joint.length; i++) {
-      for (int j = 0; j < joint[i].length; j++) {
-        joint[i][j] = vertices[i][j];
+      deleteRequested = false;
+      clearRequested = false;
+      RecognitionSession.Frame refreshed = recognitionSession.refreshCompletions();
+      if (lexicon != null && recognitionSession.decoder().length() > 0) {
+        showCompletions(refreshed);
+      } else {
+        // 확정된 글자가 없으면 다음 프레임에서 현재 글자로 다시 추천
+        data = null;
       }
     }
-    for (int i = 0; i < v.length; i++) {
-      for (int j = 0; j < v[i].length; j++) {
-        v1[i][j] = vertices[v1_n[i]][j]; // joint[v1_n[19]]까지
-        v2[i][j] = vertices[v2_n[i]][j];
-      }
-      //Log.i(TAG, String.format("***v1*** %f %f %f",v1[i][0], v1[i][1], v1[i][2]));
-      //Log.i(TAG, String.format("***v2*** %f %f %f",v2[i][0], v2[i][1], v2[i][2]));
+    if (calibrationRequested && personalIndex != null && calibration == null) {
+      calibration =
+              new CalibrationSession(
+                      personalIndex,
+                      CALIBRATION_SAMPLES,
+                      CALIBRATION_SETTLE_FRAMES,
+                      CALIBRATION_SAMPLE_INTERVAL);
+      calibrating = true;
+      startRecording();
+      calibrationSkipRequested = false;
+      calibrationCancelRequested = false;
+      showCalibrationPrompt();
     }
-    for (int i = 0; i < v.length; i++) {
-      for (int j = 0; j < v[i].length; j++) {
-        v[i][j] = v2[i][j] - v1[i][j];
+    calibrationRequested = false;
+    if (calibration != null) {
+      if (calibrationCancelRequested) {
+        calibrationCancelRequested = false;
+        calibration.cancel();
+        showCalibrationPrompt();
+      } else if (calibrationSkipRequested) {
+        calibrationSkipRequested = false;
+        calibration.skip();
+        showCalibrationPrompt();
+      } else if (recognitionSession.extract(
+              landmarkFrame.landmarks, numHands, calibrationFeatures, 0)) {
+        // 보정 중에는 특징만 구함 (분류, 글자 확정을 하면 보정 글자가 입력으로 쌓임)
+        int label = calibration.currentLetter();
+        if (calibration.accept(calibrationFeatures, 0)) {
+          recordFrame(label, calibrationFeatures);
+          showCalibrationPrompt();
+        }
       }
-//      Log.i(TAG, String.format("***v*** %f %f %f",v[i][0], v[i][1], v[i][2]));
-
-    }
-
-    float[] powCal = new float[20];
-    float[] powSum = new float[20];
-    //v = v / np.linalg.norm(v, axis=1)[:, np.newaxis]
-    for (int i = 0; i < v.length; i++) {
-      for (int j = 0; j < v[i].length; j++){
-        powCal[i] += Math.pow(v[i][j], 2);
+      if (calibration != null) {
+        return;
       }
-      powSum[i] = (float) Math.sqrt(powCal[i]);
     }
-    for (int i = 0; i < v.length; i++){
-      for (int l = 0; l < v[i].length; l++) {
-        v[i][l] = powSum[i]/powCal[i]*v[i][l];
-      }
+    RecognitionSession.Frame frame = recognitionSession.process(landmarkFrame.landmarks, numHands);
+    if (++classifiedFrames % STATS_LOG_INTERVAL == 0) {
+      // 모델 버전별 지표
+      Log.i(TAG, modelClassifier + (cascadeClassifier != null ? "; " + cascadeClassifier : ""));
     }
-
-    for (int i = 0; i < v1_new.length; i++) {
-      for (int j = 0; j < v1_new[i].length; j++) {
-        v1_new[i][j] = v[compareV1[i]][j];
-        v2_new[i][j] = v[compareV2[i]][j];
-      }
+    // 확정된 글자가 있으면 버튼에는 그 글자들의 자동완성만 표시 (한 글자 추천이 덮어쓰지 않음)
+    boolean showsCompletions = lexicon != null && recognitionSession.decoder().length() > 0;
+    if (frame.committed >= 0 && lexicon != null) {
+      showCompletions(frame);
     }
-
-    //palmAngle
-    float[] nine = {joint[9][0], joint[9][1]};
-    float[] zero = {joint[0][0], joint[0][1]};
-    float[] zeroaxis0 = {joint[0][0]+10, joint[0][1]};
-
-    float radians = 0;
-    radians = (float) (Math.atan2(zeroaxis0[1]-zero[1], zeroaxis0[0]-zero[0]) - Math.atan2(nine[1]-zero[1], nine[0]-zero[0]));
-    float p_angle = 0;
-    p_angle = (float) Math.abs(radians*180.0/Math.PI);
-
-
-    float[] sum = new float[15];
-    float[] angle = new float[15];
-    float[][] result = new float[1][16]; // 1 x 16
-
-    for (int i = 0; i < compareV1.length; i++) { //내적
-      for (int j = 0; j < joint[i].length; j++) {
-        sum[i] += v1_new[i][j] * v2_new[i][j];
-      }
-      angle[i] = (float) Math.acos(sum[i]);
-      result[0][i] = (float) Math.toDegrees(angle[i]);
+    if (frame.letter < 0) {
+      return;
+    }
+    String letter = Jamo.letter(frame.letter);
+    float max = frame.confidence; //확률
+    if (letter.equals(data)) {
+      return;
+    }
+    data = letter;
+    if (showsCompletions) {
+      runOnUiThread(
+              () -> {
+                TextView tv = findViewById(R.id.text_view);
+                tv.setText(letter);
+                Toast.makeText(this, "정확도 : " + max, Toast.LENGTH_SHORT).show();
+              });
+      return;
+    }
+    // 내장 사전에서 바로 채우고, 데이터베이스는 남은 칸만 보충
+    String[] word_list = new String[RecognitionSession.MAX_COMPLETIONS];
+    int numWords = 0;
+    if (lexicon != null) {
+      prefix[0] = (byte) frame.letter;
+      numWords = lexicon.complete(prefix, 1, word_list);
     }
-    result[0][15] = (float) p_angle; // 16번째 자리에 손바닥 각도 넣음
-    //Log.i(TAG, String.format("***result*** %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f, %f",result[0], result[1], result[2], result[3], result[4], result[5], result[6], result[7], result[8], result[9], result[10], result[11], result[12], result[13], result[14], result[15]));
+    int lexiconWords = numWords;
+    int version = ++suggestionVersion;
+    runOnUiThread(
+            () -> {
+              TextView tv = findViewById(R.id.text_view);
+              tv.setText(letter);
+              Toast.makeText(this, "정확도 : " + max, Toast.LENGTH_SHORT).show(); //정확도값 토스트로 띄움
+              if (version == suggestionVersion) {
+                showWordSuggestions(word_list);
+              }
+            });
+    if (lexiconWords < word_list.length) {
+      loadWordSuggestions(letter, word_list.clone(), lexiconWords, version);
+    }
+  } //makeAngle
 
-    Interpreter tflite = getTfliteInterpreter(MODEL_NAME);
+  /** 지금까지 확정된 글자들로 자동완성 (ㅓ/ㅕ 같은 오인식이 있어도 비슷한 단어를 찾음) */
+  private void showCompletions(RecognitionSession.Frame frame) {
+    String[] completions = Arrays.copyOf(frame.completions, frame.completions.length);
+    Arrays.fill(completions, frame.numCompletions, completions.length, null);
+    int version = ++suggestionVersion;
+    runOnUiThread(
+            () -> {
+              if (version == suggestionVersion) {
+                showWordSuggestions(completions);
+              }
+            });
+  }
 
-    float[][] output = new float[1][31]; // 출력 결과 31개
+  /** 보정 중인 글자와 진행 상황을 표시하고, 끝나면 (취소해도) 저장 */
+  private void showCalibrationPrompt() {
+    int letter = calibration.currentLetter();
+    if (letter < 0) {
+      String message = calibration.isCancelled() ? "보정 취소" : "보정 완료";
+      calibration = null;
+      calibrating = false;
+      savePersonalIndex();
+      saveRecording();
+      // 보정 전에 확정된 글자도 이어지는 단어가 아니므로 비우고, 다음 프레임부터 새로 추천
+      recognitionSession.decoder().clear();
+      data = null;
+      runOnUiThread(
+              () -> {
+                TextView tv2 = findViewById(R.id.text_view2);
+                tv2.setText("");
+                Button calibrateButton = findViewById(R.id.button_calibrate);
+                calibrateButton.setText("보정");
+                Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
+              });
+      return;
+    }
+    String prompt =
+            Jamo.letter(letter)
+                    + " (" + calibration.samples() + "/" + calibration.samplesPerLetter() + ")";
+    runOnUiThread(
+            () -> {
+              TextView tv2 = findViewById(R.id.text_view2);
+              tv2.setText(prompt);
+              Button calibrateButton = findViewById(R.id.button_calibrate);
+              calibrateButton.setText("건너뛰기");
+            });
+  }
 
-    tflite.run(result, output); // input:result 16개(관절15+손바닥1) output 31개
-    //Log.i(TAG, String.format("***index*** %d ",output[0][0]));
+  /** 결과 스레드에서 샘플을 복사하고, 파일 쓰기는 백그라운드에서 */
+  private void savePersonalIndex() {
+    PersonalIndex snapshot = personalIndex.copy();
+    File file = new File(getFilesDir(), PERSONAL_INDEX_NAME);
+    saveExecutor.execute(
+            () -> {
+              try {
+                snapshot.save(file);
+              } catch (IOException e) {
+                Log.e(TAG, "Could not save calibration samples", e);
+              }
+            });
+  }
 
-    float max = output[0][0]; //확률
-    int maxIndex = 0;
+  /** 보정 한 번을 녹화 하나로 기록 (CascadeEvaluation 이 녹화 단위로 평가용을 나눔) */
+  private void startRecording() {
+    calibrationRecording = new StringWriter();
+    try {
+      RecordedFrames.writeRecordingStart(
+              calibrationRecording, "calibration " + System.currentTimeMillis());
+    } catch (IOException e) {
+      // StringWriter 에 쓰므로 발생하지 않음
+      throw new IllegalStateException(e);
+    }
+  }
 
-    for (int i=0 ; i < output[0].length; i++) {
-      if (output[0][i] > max) {
-        max = output[0][i];
-        maxIndex = i;
+  /** 보정 샘플 한 개를 모델 출력과 함께 기록 (1단계와 개인화를 거치지 않은 TFLite 모델의 출력) */
+  private void recordFrame(int label, float[] features) {
+    try {
+      modelClassifier.classify(features, 1, recordedProbabilities);
+      int modelLabel = 0;
+      for (int c = 1; c < Jamo.COUNT; c++) {
+        if (recordedProbabilities[c] > recordedProbabilities[modelLabel]) {
+          modelLabel = c;
+        }
       }
-      data = gesture[maxIndex];
+      RecordedFrames.write(
+              calibrationRecording, label, modelLabel, features, 0, recordedProbabilities, 0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
     }
-    TextView tv = findViewById(R.id.text_view);
-    tv.setText(data);
-    Toast.makeText(this,"정확도 : %f"+max,Toast.LENGTH_SHORT).show(); //정확도값 토스트로 띄움
+  }
 
+  /** 이번 보정에서 기록한 프레임을 파일 끝에 추가 (백그라운드) */
+  private void saveRecording() {
+    String frames = calibrationRecording.toString();
+    calibrationRecording = null;
+    File file = new File(getFilesDir(), RECORDING_NAME);
+    saveExecutor.execute(
+            () -> {
+              try (OutputStreamWriter out =
+                           new OutputStreamWriter(
+                                   new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(frames);
+              } catch (IOException e) {
+                Log.e(TAG, "Could not save recorded frames", e);
+              }
+            });
+  }
 
-    myRef = database.getReference(String.valueOf(data));
-    myRef.addValueEventListener(new ValueEventListener() {
-      String[] word_list = new String[6];
+  /** 인식된 글자로 시작하는 단어를 데이터베이스에서 읽어 빈 자동완성 칸에 추가 */
+  private void loadWordSuggestions(
+          String letter, String[] word_list, int numWords, int version) {
+    myRef = database.getReference(letter);
+    // 글자가 바뀔 때 한 번만 읽음 (프레임마다 리스너가 쌓이지 않도록)
+    myRef.addListenerForSingleValueEvent(new ValueEventListener() {
 
       public void onDataChange(DataSnapshot dataSnapshot) {
+        int k = numWords;
         for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
           for (DataSnapshot snapshot2 : snapshot.getChildren()) {
             Log.i("osslog", snapshot2.getValue().toString());
-            for (int k = 0 ; k<6 ;k++){
-              word_list[k] = snapshot2.getValue().toString();
+            String word = snapshot2.getValue().toString();
+            if (k < word_list.length && !contains(word_list, k, word)) {
+              word_list[k++] = word;
             }
           }
         }
-
-        TextView tv2 = findViewById(R.id.text_view2);
-        Button bt1 = findViewById(R.id.button_voca1);
-        Button bt2 = findViewById(R.id.button_voca2);
-        Button bt3 = findViewById(R.id.button_voca3);
-        Button bt4 = findViewById(R.id.button_voca4);
-        Button bt5 = findViewById(R.id.button_voca5);
-        Button bt6 = findViewById(R.id.button_voca6);
-
-        bt1.setText(word_list[0]); //btn text 바꿔줌
-        bt2.setText(word_list[1]);
-        bt3.setText(word_list[2]);
-        bt4.setText(word_list[3]);
-        bt5.setText(word_list[4]);
-        bt6.setText(word_list[5]);
-
-        bt1.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt1 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.append(word_list[0]);
-          }
-        });
-        bt2.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt2 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.setText(word_list[1]);
-          }
-        });
-        bt3.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt3 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.setText(word_list[2]);
-          }
-        });
-        bt4.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt4 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.setText(word_list[3]);
-          }
-        });
-        bt5.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt5 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.setText(word_list[4]);
-          }
-        });
-        bt6.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt6 눌렀을 때 text 변경
-          public void onClick(View v){
-            tv2.setText(word_list[5]);
-          }
-        });
+        if (version == suggestionVersion) {
+          showWordSuggestions(word_list);
+        }
       } //onDataChange
       @Override
       public void onCancelled(DatabaseError databaseError) {
         //Toast.makeText(HandsResultGlRenderer.this,"error: " + databaseError.getMessage(), Toast.LENGTH_SHORT).show();
       }
 
-    }); //myRef.addValueEventListener
+    }); //myRef.addListenerForSingleValueEvent
+  }
 
-    // 완료 버튼 클릭시 액티비티 전환
-    Button bt_com = findViewById(R.id.button_complete);
-    bt_com.setOnClickListener(new View.OnClickListener(){
+  private static boolean contains(String[] words, int count, String word) {
+    for (int i = 0; i < count; i++) {
+      if (word.equals(words[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
 
-      @Override
-      public void onClick(View view){
-        Intent intent = new Intent(getApplicationContext(), resultActivity.class);
-        startActivity(intent);
+  /** 자동완성 버튼 6개에 단어 표시 (UI 스레드에서 호출) */
+  private void showWordSuggestions(String[] word_list) {
+    TextView tv2 = findViewById(R.id.text_view2);
+    Button bt1 = findViewById(R.id.button_voca1);
+    Button bt2 = findViewById(R.id.button_voca2);
+    Button bt3 = findViewById(R.id.button_voca3);
+    Button bt4 = findViewById(R.id.button_voca4);
+    Button bt5 = findViewById(R.id.button_voca5);
+    Button bt6 = findViewById(R.id.button_voca6);
+
+    bt1.setText(word_list[0]); //btn text 바꿔줌
+    bt2.setText(word_list[1]);
+    bt3.setText(word_list[2]);
+    bt4.setText(word_list[3]);
+    bt5.setText(word_list[4]);
+    bt6.setText(word_list[5]);
+    // 단어가 없는 칸은 비활성화 (눌러서 "null" 이 붙지 않도록)
+    bt1.setEnabled(word_list[0] != null);
+    bt2.setEnabled(word_list[1] != null);
+    bt3.setEnabled(word_list[2] != null);
+    bt4.setEnabled(word_list[3] != null);
+    bt5.setEnabled(word_list[4] != null);
+    bt6.setEnabled(word_list[5] != null);
+
+    // 단어를 고르면 단어가 끝난 것이므로 확정된 글자(언어 모델 문맥)를 비움
+    bt1.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt1 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.append(word_list[0]);
+        clearRequested = true;
       }
     });
-  } //makeAngle
-
-
+    bt2.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt2 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.setText(word_list[1]);
+        clearRequested = true;
+      }
+    });
+    bt3.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt3 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.setText(word_list[2]);
+        clearRequested = true;
+      }
+    });
+    bt4.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt4 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.setText(word_list[3]);
+        clearRequested = true;
+      }
+    });
+    bt5.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt5 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.setText(word_list[4]);
+        clearRequested = true;
+      }
+    });
+    bt6.setOnClickListener(new Button.OnClickListener(){ //자동완성 bt6 눌렀을 때 text 변경
+      public void onClick(View v){
+        tv2.setText(word_list[5]);
+        clearRequested = true;
+      }
+    });
+  }
 
-  private Interpreter getTfliteInterpreter(String modelPath){
+  private RecognitionSession createRecognitionSession(String modelPath) {
+    Classifier classifier;
     try {
-      return new Interpreter((loadModelFile(modelPath))); //loadmodelfile 함수에 예외가 포함되어 있기 때문에 반드시 try/catch
+      classifier = new TfliteClassifier(loadModelFile(modelPath)); //loadmodelfile 함수에 예외가 포함되어 있기 때문에 반드시 try/catch
     }
     catch (Exception e){
       e.printStackTrace();
+      return null;
+    }
+    modelClassifier = new SwappableClassifier(classifier, BUNDLED_MODEL_VERSION);
+    classifier = modelClassifier;
+    try (InputStream in = openCentroids()) {
+      // 확실한 프레임은 1단계에서 바로 결정하고, 애매한 프레임만 모델로 넘김
+      cascadeClassifier = new CascadeClassifier(NearestCentroidClassifier.read(in), classifier);
+      classifier = cascadeClassifier;
+    } catch (IOException e) {
+      Log.i(TAG, "No first-stage classifier, running the model on every frame");
+    }
+    personalIndex = loadPersonalIndex();
+    // 보정 샘플과 가까운 손 모양은 모델 결과보다 사용자 샘플을 더 믿음
+    classifier = new PersonalizedClassifier(classifier, personalIndex, 5, 0.5f, 2000f);
+    RecognitionSession session = new RecognitionSession(classifier, createAutocomplete());
+    session.setFeatureAccuracy(FEATURE_ACCURACY);
+    try (InputStream in = new BufferedInputStream(getAssets().open(LANGUAGE_MODEL_NAME))) {
+      session.setLanguageModel(JamoLanguageModel.read(in), LANGUAGE_MODEL_WEIGHT);
+    } catch (IOException e) {
+      Log.w(TAG, "No jamo language model, using the classifier output as is", e);
+    }
+    return session;
+  }
+
+  private MappedLexicon loadLexicon() {
+    try {
+      // 모델과 같은 방식으로 asset 을 그대로 매핑 (파싱 없음)
+      return MappedLexicon.wrap(loadModelFile(LEXICON_NAME));
+    } catch (Exception e) {
+      Log.w(TAG, "No autocomplete lexicon, using the database only", e);
+      return null;
+    }
+  }
+
+  /** 확정된 글자들에 대한 자동완성. 사전이 없으면 null */
+  private Autocomplete createAutocomplete() {
+    if (lexicon == null) {
+      return null;
+    }
+    ConfusionCosts costs = ConfusionCosts.defaults();
+    try (InputStream in = getAssets().open(CONFUSION_NAME)) {
+      costs = ConfusionCosts.read(in);
+    } catch (IOException e) {
+      Log.i(TAG, "No confusion matrix, using default letter costs");
+    }
+    return new FuzzyCompleter(lexicon, costs);
+  }
+
+  /** 기기에서 만든 1단계 (filesDir) 가 있으면 그것을, 없으면 APK 에 포함된 것을 읽음 */
+  private InputStream openCentroids() throws IOException {
+    File file = new File(getFilesDir(), CENTROIDS_NAME);
+    return new BufferedInputStream(
+            file.exists() ? new FileInputStream(file) : getAssets().open(CENTROIDS_NAME));
+  }
+
+  private PersonalIndex loadPersonalIndex() {
+    File file = new File(getFilesDir(), PERSONAL_INDEX_NAME);
+    if (file.exists()) {
+      try {
+        return PersonalIndex.map(file);
+      } catch (IOException e) {
+        Log.w(TAG, "Ignoring unreadable calibration samples", e);
+      }
     }
-    return null;
+    return new PersonalIndex();
   }
 
   private ByteBuffer loadModelFile(String modelPath) throws IOException { // tflite 파일 읽어오기
@@ -0,0 +1,178 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.Jamo;
+import com.google.mediapipe.examples.hands.recognition.SwappableClassifier;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads replacement {@code .tflite} models from a local directory and swaps them into a running
+ * {@link SwappableClassifier} without restarting the Hands pipeline.
+ *
+ * <p>The newest model file in the directory wins. It is mapped, shape-checked (16 floats in, 31
+ * out) and warmed up on a background thread, and only then offered to the classifier, which
+ * switches to it at the start of the next frame. A model that fails to load, or that is rolled
+ * back, is renamed to {@code .rejected} so it is not picked up again. The file name without its
+ * extension is the model version reported in logs.
+ */
+public class ModelRegistry implements Closeable {
+  private static final String TAG = "ModelRegistry";
+  private static final String MODEL_EXTENSION = ".tflite";
+  private static final String REJECTED_EXTENSION = ".rejected";
+  private static final int WARM_UP_RUNS = 3;
+
+  private final File directory;
+  private final SwappableClassifier classifier;
+  private final ExecutorService loader = Executors.newSingleThreadExecutor();
+  // Newest model file loaded, so the same file is not loaded twice. A file published again under
+  // the same name has a new modification time or size and is loaded again. Loader thread only.
+  private String requestedFile;
+  private long requestedModified;
+  private long requestedLength;
+
+  public ModelRegistry(File directory, SwappableClassifier classifier) {
+    this.directory = directory;
+    this.classifier = classifier;
+  }
+
+  /** Loads the newest model in the directory in the background, unless it is already loaded. */
+  public void loadLatest() {
+    // Listing and stat-ing the directory is disk I/O, so it runs on the loader as well.
+    loader.execute(this::loadNewest);
+  }
+
+  private void loadNewest() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(MODEL_EXTENSION));
+    if (files == null || files.length == 0) {
+      return;
+    }
+    File latest = files[0];
+    for (File file : files) {
+      if (file.lastModified() > latest.lastModified()) {
+        latest = file;
+      }
+    }
+    boolean sameName = latest.getName().equals(requestedFile);
+    if (sameName
+        && latest.lastModified() == requestedModified
+        && latest.length() == requestedLength) {
+      return;
+    }
+    boolean inUse = !sameName && versionOf(latest).equals(classifier.version());
+    requestedFile = latest.getName();
+    requestedModified = latest.lastModified();
+    requestedLength = latest.length();
+    if (inUse) {
+      // Already classifying, e.g. after rolling back to it.
+      return;
+    }
+    load(latest);
+  }
+
+  /**
+   * Drops a model that is loaded but not yet in use, or otherwise switches back to the model used
+   * before the current one, and rejects the dropped model's file.
+   *
+   * @return false if there is neither a pending nor an earlier model.
+   */
+  public boolean rollback() {
+    String version = classifier.rollback();
+    if (version == null) {
+      return false;
+    }
+    Log.i(TAG, "Rolling back model " + version);
+    loader.execute(() -> reject(new File(directory, version + MODEL_EXTENSION)));
+    return true;
+  }
+
+  /** Version of the model classifying now. */
+  public String version() {
+    return classifier.version();
+  }
+
+  /**
+   * Stops loading models. A model that is being warmed up is still offered to the classifier,
+   * which closes it if the classifier was closed in the meantime.
+   */
+  @Override
+  public void close() {
+    // Not shutdownNow(): interrupting a warm-up would leave the model it loaded unclosed.
+    loader.shutdown();
+  }
+
+  private void load(File file) {
+    String version = versionOf(file);
+    TfliteClassifier model = null;
+    try {
+      model = new TfliteClassifier(map(file));
+      long warmUpMs = warmUp(model);
+      Log.i(TAG, "Model " + version + " ready, warm-up " + warmUpMs + " ms");
+      classifier.offer(model, version);
+    } catch (IOException | RuntimeException e) {
+      Log.e(TAG, "Rejecting model " + version, e);
+      if (model != null) {
+        model.close();
+      }
+      reject(file);
+    }
+  }
+
+  /** Runs the model a few times so the first live frame does not pay for initialization. */
+  private static long warmUp(TfliteClassifier model) {
+    float[] features = new float[AngleFeatures.SIZE];
+    float[] probabilities = new float[Jamo.COUNT];
+    long start = SystemClock.elapsedRealtime();
+    for (int i = 0; i < WARM_UP_RUNS; i++) {
+      model.classify(features, 1, probabilities);
+    }
+    for (float p : probabilities) {
+      if (Float.isNaN(p) || Float.isInfinite(p)) {
+        throw new IllegalArgumentException("Model returns non-finite scores");
+      }
+    }
+    return SystemClock.elapsedRealtime() - start;
+  }
+
+  private static String versionOf(File file) {
+    String name = file.getName();
+    return name.substring(0, name.length() - MODEL_EXTENSION.length());
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  private static void reject(File file) {
+    if (file.exists() && !file.renameTo(new File(file.getPath() + REJECTED_EXTENSION))) {
+      Log.w(TAG, "Could not reject " + file);
+    }
+  }
+}
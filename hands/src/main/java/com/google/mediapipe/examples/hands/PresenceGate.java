@@ -0,0 +1,93 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import android.util.Log;
+
+/**
+ * Throttles camera frames while nobody is signing.
+ *
+ * <p>Once no hand has been detected for {@code idleAfterMs}, the gate goes idle and lets through
+ * only one frame per {@code idleIntervalMs}; the others are dropped before they reach the Hands
+ * graph. While it tracks no hand the graph runs only its palm detector, so an idle frame costs a
+ * single detection pass, and the first frame that finds a hand wakes the gate up. A hand that
+ * appears is therefore picked up within one idle interval plus the graph latency of one frame.
+ * Since the preview is drawn from results, it also drops to the idle rate.
+ *
+ * <p>Frame and result timestamps are the packet timestamps in microseconds. {@link #shouldSend} is
+ * called on the camera thread and {@link #onResult} on the result thread.
+ */
+public class PresenceGate {
+  private static final String TAG = "PresenceGate";
+
+  private final long idleAfterUs;
+  private final long idleIntervalUs;
+
+  private long lastHandUs = -1L;
+  private long lastSentUs = -1L;
+  private boolean idle;
+  private long skippedFrames;
+
+  public PresenceGate(long idleAfterMs, long idleIntervalMs) {
+    this.idleAfterUs = idleAfterMs * 1000L;
+    this.idleIntervalUs = idleIntervalMs * 1000L;
+  }
+
+  /**
+   * Whether the camera frame with the given timestamp should go to the Hands graph. A frame that
+   * is not sent must be released by the caller.
+   */
+  public synchronized boolean shouldSend(long timestampUs) {
+    if (lastHandUs < 0) {
+      // Measure idleness from the first frame after a (re)start.
+      lastHandUs = timestampUs;
+    }
+    if (!idle && timestampUs - lastHandUs >= idleAfterUs) {
+      Log.i(TAG, "No hand for " + (timestampUs - lastHandUs) / 1000 + " ms, going idle");
+      idle = true;
+    }
+    if (idle && lastSentUs >= 0 && timestampUs - lastSentUs < idleIntervalUs) {
+      skippedFrames++;
+      return false;
+    }
+    lastSentUs = timestampUs;
+    return true;
+  }
+
+  /** Records whether the graph found a hand in the frame with the given timestamp. */
+  public synchronized void onResult(long timestampUs, boolean handPresent) {
+    if (!handPresent) {
+      return;
+    }
+    lastHandUs = Math.max(lastHandUs, timestampUs);
+    if (idle) {
+      Log.i(TAG, "Hand detected, waking up after skipping " + skippedFrames + " frames");
+      idle = false;
+      skippedFrames = 0;
+    }
+  }
+
+  public synchronized boolean isIdle() {
+    return idle;
+  }
+
+  /** Returns to full rate, e.g. after the pipeline has been restarted. */
+  public synchronized void reset() {
+    lastHandUs = -1L;
+    lastSentUs = -1L;
+    idle = false;
+    skippedFrames = 0;
+  }
+}
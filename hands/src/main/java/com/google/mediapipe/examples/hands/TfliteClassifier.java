@@ -0,0 +1,95 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands;
+
+import com.google.mediapipe.examples.hands.recognition.AngleFeatures;
+import com.google.mediapipe.examples.hands.recognition.Classifier;
+import com.google.mediapipe.examples.hands.recognition.Jamo;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link Classifier} running {@code finger_model.tflite} (16 angles in, 31 scores out).
+ *
+ * <p>The input is a direct buffer in native order, which the interpreter reads without copying.
+ * Callers that compute features themselves, e.g. with {@link
+ * com.google.mediapipe.examples.hands.recognition.AngleKernel}, can write straight into {@link
+ * #input()} and call {@link #classifyInput}.
+ */
+public class TfliteClassifier implements Classifier, Closeable {
+  private final Interpreter interpreter;
+  private final ByteBuffer input =
+          ByteBuffer.allocateDirect(AngleFeatures.SIZE * 4).order(ByteOrder.nativeOrder());
+  private final FloatBuffer inputFloats = input.asFloatBuffer();
+  private final float[][] output = new float[1][Jamo.COUNT];
+
+  /** @throws IllegalArgumentException if the model does not take 16 floats and return 31. */
+  public TfliteClassifier(ByteBuffer model) {
+    interpreter = new Interpreter(model);
+    try {
+      checkShape("input", interpreter.getInputTensor(0), AngleFeatures.SIZE);
+      checkShape("output", interpreter.getOutputTensor(0), Jamo.COUNT);
+    } catch (IllegalArgumentException e) {
+      interpreter.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public void classify(float[] features, int count, float[] probabilities) {
+    for (int i = 0; i < count; i++) {
+      inputFloats.clear();
+      inputFloats.put(features, i * AngleFeatures.SIZE, AngleFeatures.SIZE);
+      classifyInput(probabilities, i * Jamo.COUNT);
+    }
+  }
+
+  /** The model input: {@link AngleFeatures#SIZE} floats in native order. */
+  public ByteBuffer input() {
+    return input;
+  }
+
+  /** Runs the model on the features in {@link #input()}. */
+  public void classifyInput(float[] probabilities, int offset) {
+    input.rewind();
+    interpreter.run(input, output);
+    System.arraycopy(output[0], 0, probabilities, offset, Jamo.COUNT);
+  }
+
+  @Override
+  public void close() {
+    interpreter.close();
+  }
+
+  private static void checkShape(String name, Tensor tensor, int size) {
+    int[] shape = tensor.shape();
+    if (tensor.dataType() != DataType.FLOAT32
+            || shape.length != 2
+            || shape[0] != 1
+            || shape[1] != size) {
+      throw new IllegalArgumentException(
+              "Model " + name + " must be FLOAT32 [1, " + size + "], not "
+                      + tensor.dataType() + " " + Arrays.toString(shape));
+    }
+  }
+}
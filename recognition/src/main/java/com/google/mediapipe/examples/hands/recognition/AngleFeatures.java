@@ -0,0 +1,71 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * Turns the 21 landmarks of one hand into the 16 classifier inputs: 15 joint angles and the palm
+ * angle, all in degrees.
+ *
+ * <p>Landmarks are passed as a flat array of interleaved {@code x, y, z} values. An instance keeps
+ * its scratch space between calls and is not thread-safe.
+ */
+public final class AngleFeatures {
+  public static final int NUM_LANDMARKS = 21;
+  public static final int LANDMARK_SIZE = NUM_LANDMARKS * 3;
+  public static final int SIZE = 16;
+
+  // Bone i runs from landmark BONE_START[i] to landmark BONE_END[i].
+  private static final int[] BONE_START = {
+    0, 1, 2, 3, 0, 5, 6, 7, 0, 9, 10, 11, 0, 13, 14, 15, 0, 17, 18, 19
+  };
+  private static final int[] BONE_END = {
+    1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20
+  };
+  // Joint angle i is measured between bone ANGLE_FIRST[i] and bone ANGLE_SECOND[i].
+  private static final int[] ANGLE_FIRST = {0, 1, 2, 4, 5, 6, 7, 8, 9, 10, 12, 13, 14, 16, 17};
+  private static final int[] ANGLE_SECOND = {1, 2, 3, 5, 6, 7, 9, 10, 11, 13, 14, 15, 17, 18, 19};
+
+  private final float[] bones = new float[BONE_START.length * 3];
+
+  /**
+   * Computes the features of the hand starting at {@code landmarks[offset]} into {@code
+   * features[featuresOffset..featuresOffset + SIZE)}.
+   */
+  public void compute(float[] landmarks, int offset, float[] features, int featuresOffset) {
+    for (int i = 0; i < BONE_START.length; i++) {
+      int start = offset + BONE_START[i] * 3;
+      int end = offset + BONE_END[i] * 3;
+      float x = landmarks[end] - landmarks[start];
+      float y = landmarks[end + 1] - landmarks[start + 1];
+      float z = landmarks[end + 2] - landmarks[start + 2];
+      float norm = (float) Math.sqrt(x * x + y * y + z * z);
+      bones[i * 3] = x / norm;
+      bones[i * 3 + 1] = y / norm;
+      bones[i * 3 + 2] = z / norm;
+    }
+    for (int i = 0; i < ANGLE_FIRST.length; i++) {
+      int a = ANGLE_FIRST[i] * 3;
+      int b = ANGLE_SECOND[i] * 3;
+      float dot = bones[a] * bones[b] + bones[a + 1] * bones[b + 1] + bones[a + 2] * bones[b + 2];
+      // Rounding can push the dot product of two unit vectors just past +-1.
+      dot = Math.max(-1f, Math.min(1f, dot));
+      features[featuresOffset + i] = (float) Math.toDegrees(Math.acos(dot));
+    }
+    // Palm angle: direction from the wrist (0) to the middle finger base (9) against the x axis.
+    float dx = landmarks[offset + 9 * 3] - landmarks[offset];
+    float dy = landmarks[offset + 9 * 3 + 1] - landmarks[offset + 1];
+    features[featuresOffset + 15] = (float) Math.abs(Math.toDegrees(-Math.atan2(dy, dx)));
+  }
+}
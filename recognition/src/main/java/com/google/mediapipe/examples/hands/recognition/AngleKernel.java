@@ -0,0 +1,197 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes the same 16 features as {@link AngleFeatures} in a single pass, from landmarks straight
+ * into a float array or a model input {@link ByteBuffer}.
+ *
+ * <p>Bones are not normalized: each joint angle takes the dot product of the two raw bone vectors
+ * times their inverse lengths, which are computed once per bone. {@code acos} and {@code atan2}
+ * are replaced by polynomial approximations unless the {@link Accuracy} is {@link
+ * Accuracy#EXACT}. {@link AngleKernelReport} measures the error of each mode against {@link
+ * AngleFeatures}.
+ *
+ * <p>An instance keeps its scratch space between calls and is not thread-safe.
+ */
+public final class AngleKernel {
+  /**
+   * How the kernel evaluates inverse trigonometric functions. Both paths round in float, and near a
+   * straight joint acos magnifies that rounding to about 0.02 degrees, so even {@link #EXACT}
+   * differs from {@link AngleFeatures} by that much.
+   */
+  public enum Accuracy {
+    /** {@link Math#acos} and {@link Math#atan2}. */
+    EXACT(0.03f),
+    /** Abramowitz and Stegun 4.4.46 for acos (2e-8 rad) and 4.4.49 for atan (1e-5 rad). */
+    HIGH(0.03f),
+    /** Abramowitz and Stegun 4.4.45 for acos (7e-5 rad) and a cubic atan (1.5e-3 rad). */
+    LOW(0.1f);
+
+    /** Largest difference from {@link AngleFeatures} expected for any feature, in degrees. */
+    public final float maxErrorDegrees;
+
+    Accuracy(float maxErrorDegrees) {
+      this.maxErrorDegrees = maxErrorDegrees;
+    }
+  }
+
+  private static final float RADIANS_TO_DEGREES = (float) (180.0 / Math.PI);
+  private static final float PI = (float) Math.PI;
+  private static final float HALF_PI = (float) (Math.PI / 2);
+  private static final float QUARTER_PI = (float) (Math.PI / 4);
+  // Same topology as AngleFeatures: bone i runs from landmark BONE_START[i] to landmark i + 1, and
+  // joint angle i lies between bones ANGLE_FIRST[i] and ANGLE_SECOND[i].
+  private static final int[] BONE_START = {
+    0, 1, 2, 3, 0, 5, 6, 7, 0, 9, 10, 11, 0, 13, 14, 15, 0, 17, 18, 19
+  };
+  private static final int[] ANGLE_FIRST = {0, 1, 2, 4, 5, 6, 7, 8, 9, 10, 12, 13, 14, 16, 17};
+  private static final int[] ANGLE_SECOND = {1, 2, 3, 5, 6, 7, 9, 10, 11, 13, 14, 15, 17, 18, 19};
+  private static final int NUM_BONES = BONE_START.length;
+
+  private final Accuracy accuracy;
+  // Raw bone vectors, then the inverse length of each bone.
+  private final float[] bones = new float[NUM_BONES * 3];
+  private final float[] inverseLengths = new float[NUM_BONES];
+
+  public AngleKernel(Accuracy accuracy) {
+    this.accuracy = accuracy;
+  }
+
+  public Accuracy accuracy() {
+    return accuracy;
+  }
+
+  /**
+   * Computes the features of the hand starting at {@code landmarks[offset]} into {@code
+   * features[featuresOffset..featuresOffset + AngleFeatures.SIZE)}.
+   */
+  public void compute(float[] landmarks, int offset, float[] features, int featuresOffset) {
+    compute(landmarks, offset, features, featuresOffset, null, 0);
+  }
+
+  /**
+   * Computes the features of the hand starting at {@code landmarks[offset]} as {@link
+   * AngleFeatures#SIZE} floats at byte {@code byteOffset} of {@code out}, in the buffer's byte
+   * order. The buffer's position is not changed.
+   */
+  public void compute(float[] landmarks, int offset, ByteBuffer out, int byteOffset) {
+    compute(landmarks, offset, null, 0, out, byteOffset);
+  }
+
+  private void compute(
+      float[] landmarks,
+      int offset,
+      float[] array,
+      int arrayOffset,
+      ByteBuffer buffer,
+      int byteOffset) {
+    for (int i = 0; i < NUM_BONES; i++) {
+      int start = offset + BONE_START[i] * 3;
+      int end = offset + (i + 1) * 3;
+      float x = landmarks[end] - landmarks[start];
+      float y = landmarks[end + 1] - landmarks[start + 1];
+      float z = landmarks[end + 2] - landmarks[start + 2];
+      bones[i * 3] = x;
+      bones[i * 3 + 1] = y;
+      bones[i * 3 + 2] = z;
+      inverseLengths[i] = 1f / (float) Math.sqrt(x * x + y * y + z * z);
+    }
+    for (int i = 0; i < ANGLE_FIRST.length; i++) {
+      int a = ANGLE_FIRST[i];
+      int b = ANGLE_SECOND[i];
+      float dot =
+          bones[a * 3] * bones[b * 3]
+              + bones[a * 3 + 1] * bones[b * 3 + 1]
+              + bones[a * 3 + 2] * bones[b * 3 + 2];
+      float cos = dot * inverseLengths[a] * inverseLengths[b];
+      // Rounding can push the cosine of two unit vectors just past +-1.
+      cos = Math.max(-1f, Math.min(1f, cos));
+      put(array, arrayOffset, buffer, byteOffset, i, acos(cos) * RADIANS_TO_DEGREES);
+    }
+    // Palm angle: |atan2| of the wrist (0) to middle finger base (9) direction, as AngleFeatures.
+    float dx = landmarks[offset + 9 * 3] - landmarks[offset];
+    float dy = landmarks[offset + 9 * 3 + 1] - landmarks[offset + 1];
+    put(array, arrayOffset, buffer, byteOffset, 15, absAtan2(dy, dx) * RADIANS_TO_DEGREES);
+  }
+
+  private static void put(
+      float[] array, int arrayOffset, ByteBuffer buffer, int byteOffset, int index, float value) {
+    if (buffer != null) {
+      buffer.putFloat(byteOffset + index * 4, value);
+    } else {
+      array[arrayOffset + index] = value;
+    }
+  }
+
+  /** acos(x) in radians for x in [-1, 1]. */
+  private float acos(float x) {
+    if (accuracy == Accuracy.EXACT) {
+      return (float) Math.acos(x);
+    }
+    float t = Math.abs(x);
+    float p;
+    if (accuracy == Accuracy.HIGH) {
+      p = -0.0012624911f;
+      p = p * t + 0.0066700901f;
+      p = p * t - 0.0170881256f;
+      p = p * t + 0.0308918810f;
+      p = p * t - 0.0501743046f;
+      p = p * t + 0.0889789874f;
+      p = p * t - 0.2145988016f;
+      p = p * t + 1.5707963050f;
+    } else {
+      p = -0.0187293f;
+      p = p * t + 0.0742610f;
+      p = p * t - 0.2121144f;
+      p = p * t + 1.5707288f;
+    }
+    float r = (float) Math.sqrt(1f - t) * p;
+    return x < 0f ? PI - r : r;
+  }
+
+  /** |atan2(y, x)| in radians, in [0, pi]. */
+  private float absAtan2(float y, float x) {
+    if (accuracy == Accuracy.EXACT) {
+      return (float) Math.abs(Math.atan2(y, x));
+    }
+    float ay = Math.abs(y);
+    float ax = Math.abs(x);
+    float big = Math.max(ax, ay);
+    if (big == 0f) {
+      return 0f;
+    }
+    // atan of a ratio in [0, 1], mirrored into the right octant.
+    float t = Math.min(ax, ay) / big;
+    float r = atan(t);
+    if (ay > ax) {
+      r = HALF_PI - r;
+    }
+    return x < 0f ? PI - r : r;
+  }
+
+  /** atan(t) for t in [0, 1]. */
+  private float atan(float t) {
+    if (accuracy == Accuracy.HIGH) {
+      float s = t * t;
+      return t
+          * (0.9998660f
+              + s * (-0.3302995f + s * (0.1801410f + s * (-0.0851330f + s * 0.0208351f))));
+    }
+    return QUARTER_PI * t - t * (t - 1f) * (0.2447f + 0.0663f * t);
+  }
+}
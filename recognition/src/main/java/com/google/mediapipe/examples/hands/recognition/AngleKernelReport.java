@@ -0,0 +1,166 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+/**
+ * Compares every {@link AngleKernel.Accuracy} mode with {@link AngleFeatures} on {@link
+ * SyntheticHandPoses}: the largest and mean difference of the joint angles and the palm angle, how
+ * often a nearest-centroid classifier fitted on the exact features picks a different letter, and
+ * the cost per hand of each path. The kernel writes into a direct buffer, as it would into a
+ * model's input. Exits with status 1 if a mode exceeds its {@link
+ * AngleKernel.Accuracy#maxErrorDegrees}.
+ *
+ * <pre>
+ * --hands=N          poses to compare, default 100000
+ * --max-rotation=X   random rotation of each pose in degrees, default 45
+ * --jitter=X         landmark noise in palm lengths, default 0.02
+ * --seed=N           default 1
+ * </pre>
+ */
+public final class AngleKernelReport {
+  private static final int TIMING_ROUNDS = 5;
+
+  private AngleKernelReport() {}
+
+  public static void main(String[] args) {
+    Map<String, String> options = RecognitionServer.parseOptions(args);
+    int count = Integer.parseInt(options.getOrDefault("hands", "100000"));
+    SyntheticHandPoses poses =
+        new SyntheticHandPoses(Long.parseLong(options.getOrDefault("seed", "1")))
+            .setMaxRotation(Float.parseFloat(options.getOrDefault("max-rotation", "45")))
+            .setJitter(Float.parseFloat(options.getOrDefault("jitter", "0.02")));
+    float[] landmarks = new float[count * AngleFeatures.LANDMARK_SIZE];
+    int[] labels = new int[count];
+    float[] frame = new float[LandmarkFrame.MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+    for (int i = 0; i < count; i++) {
+      labels[i] = i % Jamo.COUNT;
+      poses.next(labels[i], frame);
+      System.arraycopy(
+          frame, 0, landmarks, i * AngleFeatures.LANDMARK_SIZE, AngleFeatures.LANDMARK_SIZE);
+    }
+
+    AngleFeatures reference = new AngleFeatures();
+    float[] exact = new float[count * AngleFeatures.SIZE];
+    for (int i = 0; i < count; i++) {
+      reference.compute(
+          landmarks, i * AngleFeatures.LANDMARK_SIZE, exact, i * AngleFeatures.SIZE);
+    }
+    NearestCentroidClassifier classifier = NearestCentroidClassifier.train(exact, labels, count);
+    int[] exactLetters = classify(classifier, exact, count);
+    double referenceNanos = timeReference(landmarks, count);
+    System.out.printf("AngleFeatures: %.0f ns/hand%n", referenceNanos);
+
+    boolean passed = true;
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(AngleFeatures.SIZE * 4).order(ByteOrder.nativeOrder());
+    float[] approximate = new float[count * AngleFeatures.SIZE];
+    for (AngleKernel.Accuracy accuracy : AngleKernel.Accuracy.values()) {
+      AngleKernel kernel = new AngleKernel(accuracy);
+      double maxJoint = 0;
+      double maxPalm = 0;
+      double sumError = 0;
+      for (int i = 0; i < count; i++) {
+        kernel.compute(landmarks, i * AngleFeatures.LANDMARK_SIZE, buffer, 0);
+        for (int j = 0; j < AngleFeatures.SIZE; j++) {
+          int k = i * AngleFeatures.SIZE + j;
+          approximate[k] = buffer.getFloat(j * 4);
+          double error = Math.abs(approximate[k] - exact[k]);
+          sumError += error;
+          if (j == AngleFeatures.SIZE - 1) {
+            maxPalm = Math.max(maxPalm, error);
+          } else {
+            maxJoint = Math.max(maxJoint, error);
+          }
+        }
+      }
+      int[] letters = classify(classifier, approximate, count);
+      int changed = 0;
+      for (int i = 0; i < count; i++) {
+        if (letters[i] != exactLetters[i]) {
+          changed++;
+        }
+      }
+      double nanos = timeKernel(kernel, landmarks, count, buffer);
+      boolean ok = Math.max(maxJoint, maxPalm) <= accuracy.maxErrorDegrees;
+      System.out.printf(
+          "%-5s max error joints %.5f deg, palm %.5f deg, mean %.6f deg; "
+              + "%d of %d letters changed; %.0f ns/hand (%.1fx)%s%n",
+          accuracy,
+          maxJoint,
+          maxPalm,
+          sumError / ((double) count * AngleFeatures.SIZE),
+          changed,
+          count,
+          nanos,
+          referenceNanos / nanos,
+          ok ? "" : "  FAIL: above " + accuracy.maxErrorDegrees + " deg");
+      passed &= ok;
+    }
+    System.exit(passed ? 0 : 1);
+  }
+
+  private static int[] classify(NearestCentroidClassifier classifier, float[] features, int count) {
+    float[] probabilities = new float[count * Jamo.COUNT];
+    classifier.classify(features, count, probabilities);
+    int[] letters = new int[count];
+    for (int i = 0; i < count; i++) {
+      int best = 0;
+      for (int c = 1; c < Jamo.COUNT; c++) {
+        if (probabilities[i * Jamo.COUNT + c] > probabilities[i * Jamo.COUNT + best]) {
+          best = c;
+        }
+      }
+      letters[i] = best;
+    }
+    return letters;
+  }
+
+  /** Best of a few rounds, so the first rounds warm up the JIT. */
+  private static double timeReference(float[] landmarks, int count) {
+    AngleFeatures features = new AngleFeatures();
+    float[] out = new float[AngleFeatures.SIZE];
+    double best = Double.MAX_VALUE;
+    float sink = 0f;
+    for (int round = 0; round < TIMING_ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        features.compute(landmarks, i * AngleFeatures.LANDMARK_SIZE, out, 0);
+        sink += out[0];
+      }
+      best = Math.min(best, (double) (System.nanoTime() - start) / count);
+    }
+    return sink == 1f ? best + 1e-9 : best;
+  }
+
+  private static double timeKernel(
+      AngleKernel kernel, float[] landmarks, int count, ByteBuffer buffer) {
+    double best = Double.MAX_VALUE;
+    float sink = 0f;
+    for (int round = 0; round < TIMING_ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < count; i++) {
+        kernel.compute(landmarks, i * AngleFeatures.LANDMARK_SIZE, buffer, 0);
+        sink += buffer.getFloat(0);
+      }
+      best = Math.min(best, (double) (System.nanoTime() - start) / count);
+    }
+    // Using the results keeps the JIT from dropping the loop.
+    return sink == 1f ? best + 1e-9 : best;
+  }
+}
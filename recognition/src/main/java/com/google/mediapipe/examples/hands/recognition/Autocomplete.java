@@ -0,0 +1,27 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/** Suggests words for a spelled prefix. */
+public interface Autocomplete {
+
+  /**
+   * Writes up to {@code out.length} words whose spelling starts with {@code letters[0..length)},
+   * most frequent first.
+   *
+   * @return the number of words written.
+   */
+  int complete(byte[] letters, int length, String[] out);
+}
@@ -0,0 +1,110 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * Walks the user through every letter and stores a few samples of each in a {@link PersonalIndex}.
+ *
+ * <p>After a letter is prompted the first {@code settleFrames} frames with a hand are ignored while
+ * the user forms the sign; after that every {@code sampleInterval}-th frame is stored until the
+ * letter has {@code samplesPerLetter} samples. Earlier samples of a letter are replaced once its
+ * first new sample is stored, so a letter that is skipped, or not reached before {@link #cancel},
+ * keeps its earlier samples.
+ */
+public final class CalibrationSession {
+  private final PersonalIndex index;
+  private final int samplesPerLetter;
+  private final int settleFrames;
+  private final int sampleInterval;
+
+  private int letter;
+  private int frames;
+  private int samples;
+  private boolean cancelled;
+
+  public CalibrationSession(
+      PersonalIndex index, int samplesPerLetter, int settleFrames, int sampleInterval) {
+    this.index = index;
+    this.samplesPerLetter = samplesPerLetter;
+    this.settleFrames = settleFrames;
+    this.sampleInterval = sampleInterval;
+  }
+
+  /** The letter the user should sign now, or -1 once every letter is done. */
+  public int currentLetter() {
+    return letter < Jamo.COUNT ? letter : -1;
+  }
+
+  /** Whether the session was ended by {@link #cancel}. */
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /** Samples stored so far for the current letter. */
+  public int samples() {
+    return samples;
+  }
+
+  public int samplesPerLetter() {
+    return samplesPerLetter;
+  }
+
+  public PersonalIndex index() {
+    return index;
+  }
+
+  /**
+   * Feeds the features of a frame with a hand.
+   *
+   * @return true if the frame was stored as a sample of {@link #currentLetter()}.
+   */
+  public boolean accept(float[] features, int offset) {
+    if (letter >= Jamo.COUNT) {
+      return false;
+    }
+    frames++;
+    if (frames <= settleFrames || (frames - settleFrames) % sampleInterval != 0) {
+      return false;
+    }
+    if (samples == 0) {
+      index.removeLabel(letter);
+    }
+    index.add(features, offset, letter);
+    samples++;
+    if (samples == samplesPerLetter) {
+      nextLetter();
+    }
+    return true;
+  }
+
+  /** Moves on without finishing the current letter, keeping the samples taken so far. */
+  public void skip() {
+    nextLetter();
+  }
+
+  /** Ends the session early; {@link #currentLetter()} returns -1 from now on. */
+  public void cancel() {
+    cancelled = true;
+    letter = Jamo.COUNT;
+    frames = 0;
+    samples = 0;
+  }
+
+  private void nextLetter() {
+    letter++;
+    frames = 0;
+    samples = 0;
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A two-stage classifier: a {@link NearestCentroidClassifier} answers the frames it is confident
+ * about and only the remaining ones reach the expensive model.
+ *
+ * <p>Escalated vectors of one call are gathered and passed to the model as a single batch. Not
+ * thread-safe; give each thread its own instance.
+ */
+public final class CascadeClassifier implements Classifier {
+  private final NearestCentroidClassifier firstStage;
+  private final Classifier model;
+  private final AtomicLong frames = new AtomicLong();
+  private final AtomicLong escalated = new AtomicLong();
+
+  private float[] escalatedFeatures = new float[AngleFeatures.SIZE];
+  private float[] escalatedProbabilities = new float[Jamo.COUNT];
+  private int[] escalatedRows = new int[1];
+
+  public CascadeClassifier(NearestCentroidClassifier firstStage, Classifier model) {
+    this.firstStage = firstStage;
+    this.model = model;
+  }
+
+  @Override
+  public void classify(float[] features, int count, float[] probabilities) {
+    ensureCapacity(count);
+    int numEscalated = 0;
+    for (int i = 0; i < count; i++) {
+      int offset = i * AngleFeatures.SIZE;
+      if (!firstStage.classifyOne(features, offset, probabilities, i * Jamo.COUNT)) {
+        System.arraycopy(
+            features,
+            offset,
+            escalatedFeatures,
+            numEscalated * AngleFeatures.SIZE,
+            AngleFeatures.SIZE);
+        escalatedRows[numEscalated++] = i;
+      }
+    }
+    if (numEscalated > 0) {
+      model.classify(escalatedFeatures, numEscalated, escalatedProbabilities);
+      for (int k = 0; k < numEscalated; k++) {
+        System.arraycopy(
+            escalatedProbabilities,
+            k * Jamo.COUNT,
+            probabilities,
+            escalatedRows[k] * Jamo.COUNT,
+            Jamo.COUNT);
+      }
+    }
+    frames.addAndGet(count);
+    escalated.addAndGet(numEscalated);
+  }
+
+  /** Feature vectors classified so far. */
+  public long frames() {
+    return frames.get();
+  }
+
+  /** Feature vectors that had to go through the model. */
+  public long escalated() {
+    return escalated.get();
+  }
+
+  /** Fraction of vectors that reached the model, i.e. model invocations per frame. */
+  public double escalationRate() {
+    long total = frames.get();
+    return total == 0 ? 0 : (double) escalated.get() / total;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "cascade: %d frames, %d escalated (%.1f%%)",
+        frames.get(), escalated.get(), 100 * escalationRate());
+  }
+
+  private void ensureCapacity(int count) {
+    if (escalatedRows.length < count) {
+      escalatedFeatures = new float[count * AngleFeatures.SIZE];
+      escalatedProbabilities = new float[count * Jamo.COUNT];
+      escalatedRows = new int[count];
+    }
+  }
+}
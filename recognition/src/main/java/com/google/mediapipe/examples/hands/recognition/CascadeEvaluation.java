@@ -0,0 +1,490 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Fits and checks the first stage of a {@link CascadeClassifier} against recorded frames.
+ *
+ * <p>The centroids are fitted on the training frames. The accept ratio is then calibrated on the
+ * same frames as the loosest threshold at which the first stage loses at most {@code
+ * 1 - --target-agreement} of the accepted frames compared to the model: frames the model gets right
+ * and the centroid wrong count as a loss, the reverse as a gain. Frames without a known label count
+ * every disagreement with the model as a loss. Finally the sharpness of the first stage's scores is
+ * fitted to the model's probabilities on the accepted frames, by minimizing their cross-entropy, so
+ * the confidence gate, language model and personalization downstream see model-like scores.
+ *
+ * <p>On the test frames the tool compares the cascade with the model-only path, where the cascade
+ * answers with the first stage on accepted frames and with the recorded model output otherwise:
+ * per-frame accuracy, the mean confidence of both on the accepted frames, and the letters a {@link
+ * LetterDecoder} commits from each path, recording by recording. Without {@code --test}, every
+ * fifth recording is held out, or the last one when there are fewer than five, so that the
+ * near-identical neighbouring frames of a take never end up on both sides of the split. The tool
+ * exits with status 1 if the cascade is less accurate than the model by more than {@code
+ * --tolerance}, or if the decoded letters differ in more than {@code --max-decoded-changes} of the
+ * model's letters.
+ *
+ * <pre>
+ * --train=FILE             recorded frames to fit on (required, see {@link RecordedFrames})
+ * --test=FILE              held-out frames; default every fifth recording of --train
+ * --out=FILE               where to write the fitted first stage
+ * --target-agreement=X     default 0.995
+ * --tolerance=X            allowed accuracy loss, default 0.005
+ * --max-decoded-changes=X  allowed edit distance of the decoded letters per model letter,
+ *                          default 0.01
+ * --confusion=FILE         write the model's confusion counts on labelled frames, for
+ *                          {@link ConfusionCosts}
+ * </pre>
+ */
+public final class CascadeEvaluation {
+  private static final float DISTANCE_PERCENTILE = 0.99f;
+  private static final int HELD_OUT_RECORDING_INTERVAL = 5;
+  // Range and steps of the golden-section search for the sharpness, over its logarithm.
+  private static final double MIN_SHARPNESS = 1e-3;
+  private static final double MAX_SHARPNESS = 1e3;
+  private static final int SHARPNESS_STEPS = 60;
+  // Keeps log(0) out of the cross-entropy for letters the first stage rules out entirely.
+  private static final double MIN_SCORE = 1e-12;
+
+  private CascadeEvaluation() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = RecognitionServer.parseOptions(args);
+    if (!options.containsKey("train")) {
+      System.err.println("Missing --train=<recorded frames>");
+      System.exit(2);
+    }
+    float targetAgreement =
+        Float.parseFloat(options.getOrDefault("target-agreement", "0.995"));
+    float tolerance = Float.parseFloat(options.getOrDefault("tolerance", "0.005"));
+    float maxDecodedChanges =
+        Float.parseFloat(options.getOrDefault("max-decoded-changes", "0.01"));
+    RecordedFrames all = readFrames(options.get("train"));
+    RecordedFrames train = all;
+    RecordedFrames test;
+    boolean[] held = new boolean[all.count];
+    if (options.containsKey("test")) {
+      test = readFrames(options.get("test"));
+    } else {
+      if (all.numRecordings < 2) {
+        System.err.println(
+            "Need --test=<recorded frames> or at least two recordings (\""
+                + RecordedFrames.RECORDING_MARKER
+                + "\" lines) to hold one out");
+        System.exit(2);
+      }
+      for (int i = 0; i < all.count; i++) {
+        held[i] = isHeldOut(all.recordings[i], all.numRecordings);
+      }
+      test = all;
+    }
+
+    // Fit on the signer's intended letter where known, otherwise mimic the model.
+    float[] fitFeatures = new float[train.count * AngleFeatures.SIZE];
+    int[] fitLabels = new int[train.count];
+    int fitCount = 0;
+    for (int i = 0; i < train.count; i++) {
+      int label = train.labels[i] >= 0 ? train.labels[i] : train.modelLabels[i];
+      if (held[i] || label < 0) {
+        continue;
+      }
+      System.arraycopy(
+          train.features,
+          i * AngleFeatures.SIZE,
+          fitFeatures,
+          fitCount * AngleFeatures.SIZE,
+          AngleFeatures.SIZE);
+      fitLabels[fitCount++] = label;
+    }
+    NearestCentroidClassifier centroids =
+        calibrate(
+            NearestCentroidClassifier.train(fitFeatures, fitLabels, fitCount),
+            train,
+            held,
+            targetAgreement);
+
+    Report report = evaluate(centroids, test, options.containsKey("test") ? null : held);
+    System.out.println(report);
+    if (options.containsKey("out")) {
+      try (OutputStream out = new FileOutputStream(options.get("out"))) {
+        centroids.write(out);
+      }
+    }
+    if (options.containsKey("confusion")) {
+      try (Writer out =
+          new OutputStreamWriter(
+              new FileOutputStream(options.get("confusion")), StandardCharsets.UTF_8)) {
+        ConfusionCosts.writeCounts(confusionCounts(all), out);
+      }
+    }
+    boolean failed = false;
+    if (report.labelled > 0 && report.modelAccuracy() - report.cascadeAccuracy() > tolerance) {
+      System.err.printf(
+          "Cascade loses %.2f%% accuracy, more than the %.2f%% tolerance%n",
+          100 * (report.modelAccuracy() - report.cascadeAccuracy()), 100 * tolerance);
+      failed = true;
+    }
+    if (report.decodedChangeRate() > maxDecodedChanges) {
+      System.err.printf(
+          "Cascade changes %.2f%% of the decoded letters, more than the allowed %.2f%%%n",
+          100 * report.decodedChangeRate(), 100 * maxDecodedChanges);
+      failed = true;
+    }
+    if (failed) {
+      System.exit(1);
+    }
+  }
+
+  /** Whether recording {@code recording} of {@code numRecordings} is held out for testing. */
+  static boolean isHeldOut(int recording, int numRecordings) {
+    if (numRecordings < HELD_OUT_RECORDING_INTERVAL) {
+      return recording == numRecordings - 1;
+    }
+    return recording % HELD_OUT_RECORDING_INTERVAL == HELD_OUT_RECORDING_INTERVAL - 1;
+  }
+
+  /** Counts model outputs per intended letter, indexed {@code [label * Jamo.COUNT + model]}. */
+  static long[] confusionCounts(RecordedFrames frames) {
+    long[] counts = new long[Jamo.COUNT * Jamo.COUNT];
+    for (int i = 0; i < frames.count; i++) {
+      if (frames.labels[i] >= 0 && frames.modelLabels[i] >= 0) {
+        counts[frames.labels[i] * Jamo.COUNT + frames.modelLabels[i]]++;
+      }
+    }
+    return counts;
+  }
+
+  /** Picks the thresholds and then the sharpness on frames not marked in {@code skip}. */
+  static NearestCentroidClassifier calibrate(
+      NearestCentroidClassifier centroids,
+      RecordedFrames frames,
+      boolean[] skip,
+      float targetAgreement) {
+    float[] scratch = new float[Jamo.COUNT];
+    int n = 0;
+    float[] nearest = new float[frames.count];
+    float[] ratios = new float[frames.count];
+    int[] losses = new int[frames.count];
+    int[] rows = new int[frames.count];
+    float[] distances = new float[frames.count * Jamo.COUNT];
+    for (int i = 0; i < frames.count; i++) {
+      if (skip[i] || frames.modelLabels[i] < 0) {
+        continue;
+      }
+      float[] nr = centroids.nearestAndRatio(frames.features, i * AngleFeatures.SIZE, scratch);
+      nearest[n] = nr[0];
+      ratios[n] = nr[1];
+      rows[n] = i;
+      centroids.lastDistances(distances, n * Jamo.COUNT);
+      int centroid = centroids.lastNearest();
+      int label = frames.labels[i];
+      if (label >= 0) {
+        losses[n] = (frames.modelLabels[i] == label ? 1 : 0) - (centroid == label ? 1 : 0);
+      } else {
+        losses[n] = centroid == frames.modelLabels[i] ? 0 : 1;
+      }
+      n++;
+    }
+    if (n == 0) {
+      return centroids.withThresholds(0f, 0f);
+    }
+    float[] sortedNearest = Arrays.copyOf(nearest, n);
+    Arrays.sort(sortedNearest);
+    float maxDistance = sortedNearest[Math.min(n - 1, (int) (DISTANCE_PERCENTILE * n))];
+
+    // Sweep ratios from most to least confident, keeping the loosest prefix that stays on target.
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Float.compare(ratios[a], ratios[b]));
+    float acceptRatio = 0f;
+    int accepted = 0;
+    int loss = 0;
+    for (int k = 0; k < n; k++) {
+      int i = order[k];
+      if (nearest[i] > maxDistance) {
+        continue;
+      }
+      accepted++;
+      loss += losses[i];
+      if (loss <= (1 - targetAgreement) * accepted) {
+        acceptRatio = ratios[i];
+      }
+    }
+
+    boolean[] acceptedRows = new boolean[n];
+    for (int i = 0; i < n; i++) {
+      acceptedRows[i] = nearest[i] <= maxDistance && ratios[i] <= acceptRatio;
+    }
+    float sharpness = fitSharpness(distances, rows, acceptedRows, n, frames.modelProbabilities);
+    return centroids.withThresholds(acceptRatio, maxDistance).withSharpness(sharpness);
+  }
+
+  /**
+   * The sharpness that minimizes the cross-entropy from the model's probabilities to the first
+   * stage's scores over the accepted rows. The cross-entropy is convex in the sharpness, so a
+   * golden-section search over its logarithm finds the minimum.
+   */
+  static float fitSharpness(
+      float[] distances, int[] rows, boolean[] accepted, int n, float[] modelProbabilities) {
+    boolean any = false;
+    for (int i = 0; i < n && !any; i++) {
+      any = accepted[i];
+    }
+    if (!any) {
+      return NearestCentroidClassifier.DEFAULT_SHARPNESS;
+    }
+    double ratio = (Math.sqrt(5) - 1) / 2;
+    double lo = Math.log(MIN_SHARPNESS);
+    double hi = Math.log(MAX_SHARPNESS);
+    double a = hi - ratio * (hi - lo);
+    double b = lo + ratio * (hi - lo);
+    double fa = crossEntropy(Math.exp(a), distances, rows, accepted, n, modelProbabilities);
+    double fb = crossEntropy(Math.exp(b), distances, rows, accepted, n, modelProbabilities);
+    for (int step = 0; step < SHARPNESS_STEPS; step++) {
+      if (fa <= fb) {
+        hi = b;
+        b = a;
+        fb = fa;
+        a = hi - ratio * (hi - lo);
+        fa = crossEntropy(Math.exp(a), distances, rows, accepted, n, modelProbabilities);
+      } else {
+        lo = a;
+        a = b;
+        fa = fb;
+        b = lo + ratio * (hi - lo);
+        fb = crossEntropy(Math.exp(b), distances, rows, accepted, n, modelProbabilities);
+      }
+    }
+    return (float) Math.exp((lo + hi) / 2);
+  }
+
+  private static double crossEntropy(
+      double sharpness,
+      float[] distances,
+      int[] rows,
+      boolean[] accepted,
+      int n,
+      float[] modelProbabilities) {
+    float[] scores = new float[Jamo.COUNT];
+    double sum = 0;
+    for (int i = 0; i < n; i++) {
+      if (!accepted[i]) {
+        continue;
+      }
+      NearestCentroidClassifier.scores(
+          distances, i * Jamo.COUNT, (float) sharpness, scores, 0);
+      int model = rows[i] * Jamo.COUNT;
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        if (modelProbabilities[model + c] > 0f) {
+          sum -= modelProbabilities[model + c] * Math.log(Math.max(scores[c], MIN_SCORE));
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Evaluates frames marked in {@code only}, or all frames when it is null. Recordings must be
+   * either wholly in or wholly out of {@code only}.
+   */
+  static Report evaluate(
+      NearestCentroidClassifier centroids, RecordedFrames frames, boolean[] only) {
+    Report report = new Report();
+    // What the cascade hands downstream for each frame: first-stage scores or model output.
+    float[] cascadeProbabilities = new float[frames.count * Jamo.COUNT];
+    boolean[] confident = new boolean[frames.count];
+    long start = System.nanoTime();
+    for (int i = 0; i < frames.count; i++) {
+      if (only == null || only[i]) {
+        confident[i] =
+            centroids.classifyOne(
+                frames.features, i * AngleFeatures.SIZE, cascadeProbabilities, i * Jamo.COUNT);
+        report.frames++;
+      }
+    }
+    report.firstStageNanos = report.frames == 0 ? 0 : (System.nanoTime() - start) / report.frames;
+
+    for (int i = 0; i < frames.count; i++) {
+      if (only != null && !only[i]) {
+        continue;
+      }
+      int row = i * Jamo.COUNT;
+      int cascade;
+      if (confident[i]) {
+        cascade = argmax(cascadeProbabilities, row);
+        report.firstStageConfidence += cascadeProbabilities[row + cascade];
+        report.modelConfidence +=
+            frames.modelProbabilities[row + argmax(frames.modelProbabilities, row)];
+      } else {
+        report.escalated++;
+        System.arraycopy(frames.modelProbabilities, row, cascadeProbabilities, row, Jamo.COUNT);
+        cascade = frames.modelLabels[i];
+      }
+      if (cascade == frames.modelLabels[i]) {
+        report.agreements++;
+      }
+      if (frames.labels[i] >= 0) {
+        report.labelled++;
+        if (frames.modelLabels[i] == frames.labels[i]) {
+          report.modelCorrect++;
+        }
+        if (cascade == frames.labels[i]) {
+          report.cascadeCorrect++;
+        }
+      }
+    }
+
+    // Decode each recording along both paths, as RecognitionSession would.
+    for (int i = 0; i < frames.count; ) {
+      int end = i + 1;
+      while (end < frames.count && frames.recordings[end] == frames.recordings[i]) {
+        end++;
+      }
+      if (only == null || only[i]) {
+        byte[] model = decode(frames.modelProbabilities, i, end);
+        byte[] cascade = decode(cascadeProbabilities, i, end);
+        report.recordings++;
+        report.modelLetters += model.length;
+        report.cascadeLetters += cascade.length;
+        report.decodedChanges += editDistance(model, cascade);
+      }
+      i = end;
+    }
+    return report;
+  }
+
+  /** The letters a default {@link LetterDecoder} commits from frames {@code [from, to)}. */
+  static byte[] decode(float[] probabilities, int from, int to) {
+    LetterDecoder decoder =
+        new LetterDecoder(
+            RecognitionSession.DEFAULT_HOLD_FRAMES, RecognitionSession.DEFAULT_MIN_CONFIDENCE);
+    ByteArrayOutputStream letters = new ByteArrayOutputStream();
+    for (int i = from; i < to; i++) {
+      int best = argmax(probabilities, i * Jamo.COUNT);
+      int committed = decoder.accept(best, probabilities[i * Jamo.COUNT + best]);
+      if (committed >= 0) {
+        letters.write(committed);
+      }
+    }
+    return letters.toByteArray();
+  }
+
+  static int editDistance(byte[] a, byte[] b) {
+    int[] row = new int[b.length + 1];
+    for (int j = 0; j <= b.length; j++) {
+      row[j] = j;
+    }
+    for (int i = 1; i <= a.length; i++) {
+      int diagonal = row[0];
+      row[0] = i;
+      for (int j = 1; j <= b.length; j++) {
+        int above = row[j];
+        int substitution = diagonal + (a[i - 1] == b[j - 1] ? 0 : 1);
+        row[j] = Math.min(substitution, Math.min(above, row[j - 1]) + 1);
+        diagonal = above;
+      }
+    }
+    return row[b.length];
+  }
+
+  private static int argmax(float[] probabilities, int offset) {
+    int best = 0;
+    for (int c = 1; c < Jamo.COUNT; c++) {
+      if (probabilities[offset + c] > probabilities[offset + best]) {
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  /** Outcome of {@link #evaluate}. */
+  static final class Report {
+    int frames;
+    int escalated;
+    int agreements;
+    int labelled;
+    int modelCorrect;
+    int cascadeCorrect;
+    long firstStageNanos;
+    // Summed over the frames the first stage answered.
+    double firstStageConfidence;
+    double modelConfidence;
+    int recordings;
+    int modelLetters;
+    int cascadeLetters;
+    int decodedChanges;
+
+    double modelAccuracy() {
+      return labelled == 0 ? 0 : (double) modelCorrect / labelled;
+    }
+
+    double cascadeAccuracy() {
+      return labelled == 0 ? 0 : (double) cascadeCorrect / labelled;
+    }
+
+    /** Edit distance between the decoded letters of both paths, per letter of the model's. */
+    double decodedChangeRate() {
+      return decodedChanges == 0 ? 0 : (double) decodedChanges / Math.max(1, modelLetters);
+    }
+
+    @Override
+    public String toString() {
+      int answered = frames - escalated;
+      StringBuilder out = new StringBuilder();
+      out.append(String.format("frames:               %d in %d recordings%n", frames, recordings));
+      out.append(
+          String.format(
+              "escalation rate:      %.1f%% (model invocations per frame %.3f)%n",
+              100.0 * escalated / Math.max(1, frames), (double) escalated / Math.max(1, frames)));
+      out.append(
+          String.format(
+              "agreement with model: %.2f%%%n", 100.0 * agreements / Math.max(1, frames)));
+      if (labelled > 0) {
+        out.append(String.format("model-only accuracy:  %.2f%%%n", 100 * modelAccuracy()));
+        out.append(String.format("cascade accuracy:     %.2f%%%n", 100 * cascadeAccuracy()));
+      }
+      out.append(
+          String.format(
+              "mean confidence:      model %.3f, first stage %.3f on first-stage frames%n",
+              modelConfidence / Math.max(1, answered),
+              firstStageConfidence / Math.max(1, answered)));
+      out.append(
+          String.format(
+              "decoded letters:      model %d, cascade %d, %d edits (%.2f%%)%n",
+              modelLetters, cascadeLetters, decodedChanges, 100 * decodedChangeRate()));
+      out.append(String.format("first stage cost:     %d ns/frame", firstStageNanos));
+      return out.toString();
+    }
+  }
+
+  private static RecordedFrames readFrames(String path) throws IOException {
+    try (InputStream in = new FileInputStream(path)) {
+      return RecordedFrames.read(in);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/** Maps {@link AngleFeatures} vectors to a score for each of the {@link Jamo#COUNT} letters. */
+public interface Classifier {
+
+  /**
+   * Classifies {@code count} feature vectors laid out back to back in {@code features} and writes
+   * {@link Jamo#COUNT} scores per vector into {@code probabilities}.
+   */
+  void classify(float[] features, int count, float[] probabilities);
+}
@@ -0,0 +1,154 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Edit costs between letters for {@link FuzzyCompleter}.
+ *
+ * <p>Inserting or deleting a letter costs {@link #EDIT_COST}. Substituting a letter the classifier
+ * often confuses costs less: from a confusion matrix, a letter signed as {@code intended} and
+ * recognized as {@code spelled} at rate {@code r} costs {@code ln(r) / ln(RATE_FLOOR)}, clamped to
+ * {@code [MIN_COST, EDIT_COST]}, so a 10% confusion costs a third of an edit.
+ *
+ * <p>The confusion file is text: one row per intended letter in {@link Jamo} order, each with
+ * {@link Jamo#COUNT} whitespace-separated counts of recognized letters. Lines starting with
+ * {@code #} are skipped. {@link CascadeEvaluation} writes one from recorded frames.
+ */
+public final class ConfusionCosts {
+  public static final float EDIT_COST = 1f;
+
+  private static final float MIN_COST = 0.1f;
+  private static final double RATE_FLOOR = 0.001;
+  // Letter pairs the model is known to mix up, used until a confusion matrix is available.
+  private static final String[] DEFAULT_PAIRS = {"ㅓㅕ", "ㅈㅊ", "ㅐㅔ"};
+  private static final float DEFAULT_PAIR_COST = 0.3f;
+
+  // Indexed [intended * COUNT + spelled].
+  private final float[] substitution;
+
+  private ConfusionCosts(float[] substitution) {
+    this.substitution = substitution;
+  }
+
+  /** Every substitution costs a full edit. */
+  public static ConfusionCosts uniform() {
+    float[] costs = new float[Jamo.COUNT * Jamo.COUNT];
+    Arrays.fill(costs, EDIT_COST);
+    for (int i = 0; i < Jamo.COUNT; i++) {
+      costs[i * Jamo.COUNT + i] = 0f;
+    }
+    return new ConfusionCosts(costs);
+  }
+
+  /** Uniform costs, except for a few letter pairs the classifier is known to confuse. */
+  public static ConfusionCosts defaults() {
+    ConfusionCosts costs = uniform();
+    for (String pair : DEFAULT_PAIRS) {
+      int a = Jamo.indexOf(pair.charAt(0));
+      int b = Jamo.indexOf(pair.charAt(1));
+      costs.substitution[a * Jamo.COUNT + b] = DEFAULT_PAIR_COST;
+      costs.substitution[b * Jamo.COUNT + a] = DEFAULT_PAIR_COST;
+    }
+    return costs;
+  }
+
+  /**
+   * Derives costs from confusion counts indexed {@code [intended * Jamo.COUNT + recognized]}.
+   * Letters without any counts keep uniform costs.
+   */
+  public static ConfusionCosts fromCounts(long[] counts) {
+    ConfusionCosts costs = uniform();
+    for (int t = 0; t < Jamo.COUNT; t++) {
+      long total = 0;
+      for (int p = 0; p < Jamo.COUNT; p++) {
+        total += counts[t * Jamo.COUNT + p];
+      }
+      if (total == 0) {
+        continue;
+      }
+      for (int p = 0; p < Jamo.COUNT; p++) {
+        long n = counts[t * Jamo.COUNT + p];
+        if (p == t || n == 0) {
+          continue;
+        }
+        double cost = Math.log((double) n / total) / Math.log(RATE_FLOOR);
+        costs.substitution[t * Jamo.COUNT + p] =
+            (float) Math.max(MIN_COST, Math.min(EDIT_COST, cost));
+      }
+    }
+    return costs;
+  }
+
+  /** Reads a confusion file and derives costs from it. */
+  public static ConfusionCosts read(InputStream in) throws IOException {
+    long[] counts = new long[Jamo.COUNT * Jamo.COUNT];
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    int row = 0;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split("\\s+");
+      if (row >= Jamo.COUNT || fields.length != Jamo.COUNT) {
+        throw new IOException("Confusion matrix must be " + Jamo.COUNT + "x" + Jamo.COUNT);
+      }
+      for (int p = 0; p < Jamo.COUNT; p++) {
+        try {
+          counts[row * Jamo.COUNT + p] = Long.parseLong(fields[p]);
+        } catch (NumberFormatException e) {
+          throw new IOException("Bad count in confusion matrix line: " + line, e);
+        }
+      }
+      row++;
+    }
+    if (row != Jamo.COUNT) {
+      throw new IOException("Confusion matrix must be " + Jamo.COUNT + "x" + Jamo.COUNT);
+    }
+    return fromCounts(counts);
+  }
+
+  /** Writes confusion counts in the format {@link #read} expects. */
+  public static void writeCounts(long[] counts, Writer out) {
+    PrintWriter writer = new PrintWriter(out);
+    writer.println("# rows: intended letter, columns: recognized letter, in Jamo order");
+    for (int t = 0; t < Jamo.COUNT; t++) {
+      StringBuilder line = new StringBuilder();
+      for (int p = 0; p < Jamo.COUNT; p++) {
+        if (p > 0) {
+          line.append(' ');
+        }
+        line.append(counts[t * Jamo.COUNT + p]);
+      }
+      writer.println(line);
+    }
+    writer.flush();
+  }
+
+  /** Cost of reading {@code spelled} where the word has {@code intended}. */
+  public float substitution(int intended, int spelled) {
+    return substitution[intended * Jamo.COUNT + spelled];
+  }
+}
@@ -0,0 +1,231 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * Completes spelled prefixes that may contain misrecognized, missing or extra letters.
+ *
+ * <p>The sorted spellings of a {@link MappedLexicon} form an implicit trie: the words sharing a
+ * prefix are a contiguous range, split into children by binary search on the next letter. The
+ * search walks that trie depth first, carrying one row of a weighted edit distance (costs from
+ * {@link ConfusionCosts}) between the trie path and the spelled prefix. The last cell of a row is
+ * the cost of completing the whole prefix to that node. The search keeps descending while some
+ * cell of the row is below the lowest such cost on the path, since only then can a deeper node
+ * match more cheaply; after that the words below are collected at the cost reached. A branch that
+ * has no match yet is dropped as soon as every cell of its row is over the allowed cost, so only
+ * paths near the spelled prefix are visited.
+ *
+ * <p>Words that start with exactly the spelled prefix come first, by frequency, as a plain lexicon
+ * lookup would list them. The others are ranked by {@code ln(1 + frequency) - COST_WEIGHT * cost}.
+ *
+ * <p>The allowed cost is {@code min(maxCost, COST_PER_LETTER * length)}, so short prefixes must
+ * match almost exactly. A search that runs out of its time budget returns the best words found so
+ * far; the branch matching the spelled letters is always tried first. Safe to share between
+ * threads.
+ */
+public final class FuzzyCompleter implements Autocomplete {
+  public static final float DEFAULT_MAX_COST = 1f;
+  public static final long DEFAULT_BUDGET_NANOS = 2_000_000L;
+
+  private static final float COST_PER_LETTER = 0.34f;
+  // One full edit is worth a factor of e^3 (about 20) in frequency.
+  private static final float COST_WEIGHT = 3f;
+  // More than ln(1 + Integer.MAX_VALUE), so no frequency lifts a fuzzy match over an exact one.
+  private static final float EXACT_MATCH_BONUS = 32f;
+  private static final int CLOCK_CHECK_INTERVAL = 256;
+
+  private final MappedLexicon lexicon;
+  private final ConfusionCosts costs;
+  private final float maxCost;
+  private final long budgetNanos;
+
+  public FuzzyCompleter(MappedLexicon lexicon, ConfusionCosts costs) {
+    this(lexicon, costs, DEFAULT_MAX_COST, DEFAULT_BUDGET_NANOS);
+  }
+
+  /**
+   * @param maxCost largest total edit cost of a completion.
+   * @param budgetNanos time after which a search returns what it has found.
+   */
+  public FuzzyCompleter(
+      MappedLexicon lexicon, ConfusionCosts costs, float maxCost, long budgetNanos) {
+    this.lexicon = lexicon;
+    this.costs = costs;
+    this.maxCost = maxCost;
+    this.budgetNanos = budgetNanos;
+  }
+
+  @Override
+  public int complete(byte[] letters, int length, String[] out) {
+    Search search = new Search(letters, length, out.length);
+    search.run();
+    for (int i = 0; i < search.found; i++) {
+      out[i] = lexicon.word(search.words[i]);
+    }
+    return search.found;
+  }
+
+  /** State of one query. */
+  private final class Search {
+    final byte[] query;
+    final int length;
+    final float limit;
+    final long deadline;
+    // rows[d][j]: cost of matching the first d letters of the trie path with query[0..j).
+    final float[][] rows = new float[WordList.MAX_SPELLING + 1][];
+    final int[] words;
+    final float[] scores;
+    int found;
+    int steps;
+    boolean timedOut;
+
+    Search(byte[] query, int length, int capacity) {
+      this.query = query;
+      this.length = length;
+      this.limit = Math.min(maxCost, COST_PER_LETTER * length);
+      this.deadline = System.nanoTime() + budgetNanos;
+      this.words = new int[capacity];
+      this.scores = new float[capacity];
+    }
+
+    void run() {
+      float[] row = row(0);
+      for (int j = 0; j <= length; j++) {
+        row[j] = j * ConfusionCosts.EDIT_COST;
+      }
+      visit(0, lexicon.size(), 0, Float.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Visits the trie node for entries {@code [from, to)} that share {@code depth} letters.
+     *
+     * @param matched lowest cost of completing the prefix to an ancestor, or infinity.
+     */
+    void visit(int from, int to, int depth, float matched) {
+      float[] row = rows[depth];
+      if (row[length] <= limit) {
+        matched = Math.min(matched, row[length]);
+      }
+      float best = row[0];
+      for (int j = 1; j <= length; j++) {
+        best = Math.min(best, row[j]);
+      }
+      if (best >= matched || depth == WordList.MAX_SPELLING) {
+        // No deeper node can match more cheaply.
+        if (matched <= limit) {
+          collect(from, to, matched);
+        }
+        return;
+      }
+      boolean stop = ++steps % CLOCK_CHECK_INTERVAL == 0 ? outOfTime() : timedOut;
+      if (stop) {
+        return;
+      }
+      int start = from;
+      while (start < to && lexicon.spellingLength(start) == depth) {
+        start++;
+      }
+      if (matched <= limit) {
+        collect(from, start, matched);
+      }
+      int preferred = depth < length ? query[depth] & 0xFF : -1;
+      if (preferred >= 0) {
+        int first = lowerBound(start, to, depth, preferred);
+        int end = upperBound(first, to, depth, preferred);
+        if (first < end) {
+          descend(first, end, depth, preferred, matched);
+        }
+      }
+      for (int child = start; child < to && !timedOut; ) {
+        int letter = lexicon.letter(child, depth);
+        int end = upperBound(child, to, depth, letter);
+        if (letter != preferred) {
+          descend(child, end, depth, letter, matched);
+        }
+        child = end;
+      }
+    }
+
+    void descend(int from, int to, int depth, int letter, float matched) {
+      float[] row = rows[depth];
+      float[] next = row(depth + 1);
+      next[0] = row[0] + ConfusionCosts.EDIT_COST;
+      float best = next[0];
+      for (int j = 1; j <= length; j++) {
+        float cost =
+            Math.min(
+                row[j - 1] + costs.substitution(letter, query[j - 1] & 0xFF),
+                Math.min(row[j], next[j - 1]) + ConfusionCosts.EDIT_COST);
+        next[j] = cost;
+        best = Math.min(best, cost);
+      }
+      if (best <= limit || matched <= limit) {
+        visit(from, to, depth + 1, matched);
+      }
+    }
+
+    void collect(int from, int to, float cost) {
+      for (int i = from; i < to; i++) {
+        if ((i - from) % CLOCK_CHECK_INTERVAL == CLOCK_CHECK_INTERVAL - 1 && outOfTime()) {
+          return;
+        }
+        float score =
+            (float) Math.log1p(lexicon.frequency(i))
+                + (cost == 0f ? EXACT_MATCH_BONUS : -COST_WEIGHT * cost);
+        found = TopWords.offer(i, score, words, scores, found);
+      }
+    }
+
+    boolean outOfTime() {
+      if (!timedOut && System.nanoTime() > deadline) {
+        timedOut = true;
+      }
+      return timedOut;
+    }
+
+    float[] row(int depth) {
+      if (rows[depth] == null) {
+        rows[depth] = new float[length + 1];
+      }
+      return rows[depth];
+    }
+
+    /** First entry of the range whose letter at {@code depth} is at least {@code letter}. */
+    int lowerBound(int from, int to, int depth, int letter) {
+      while (from < to) {
+        int mid = (from + to) >>> 1;
+        if (lexicon.letter(mid, depth) < letter) {
+          from = mid + 1;
+        } else {
+          to = mid;
+        }
+      }
+      return from;
+    }
+
+    /** First entry of the range whose letter at {@code depth} is above {@code letter}. */
+    int upperBound(int from, int to, int depth, int letter) {
+      while (from < to) {
+        int mid = (from + to) >>> 1;
+        if (lexicon.letter(mid, depth) <= letter) {
+          from = mid + 1;
+        } else {
+          to = mid;
+        }
+      }
+      return from;
+    }
+  }
+}
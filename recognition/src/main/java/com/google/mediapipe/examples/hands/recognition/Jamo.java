@@ -0,0 +1,158 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * The 31 fingerspelled jamo recognized by the classifier, in model output order.
+ *
+ * <p>Words are keyed by the sequence of letters a signer actually spells: double consonants,
+ * consonant clusters and compound vowels outside the alphabet are spelled as their parts (ㄲ is ㄱㄱ,
+ * ㄳ is ㄱㅅ, ㅘ is ㅗㅏ).
+ */
+public final class Jamo {
+  public static final int COUNT = 31;
+
+  private static final String[] LETTERS = {
+    "ㄱ", "ㄴ", "ㄷ", "ㄹ", "ㅁ", "ㅂ", "ㅅ", "ㅇ", "ㅈ", "ㅊ", "ㅋ", "ㅌ", "ㅍ", "ㅎ", "ㅏ",
+    "ㅑ", "ㅓ", "ㅕ", "ㅗ", "ㅛ", "ㅜ", "ㅠ", "ㅡ", "ㅣ", "ㅐ", "ㅒ", "ㅔ", "ㅖ", "ㅢ", "ㅚ", "ㅟ"
+  };
+
+  private static final char SYLLABLE_FIRST = 0xAC00;
+  private static final char SYLLABLE_LAST = 0xD7A3;
+  private static final char COMPAT_FIRST = 0x3131;
+  private static final char COMPAT_LAST = 0x3163;
+
+  // Spellings of the initial, medial and final jamo of a precomposed syllable, in Unicode order.
+  private static final String[] INITIALS = {
+    "ㄱ", "ㄱㄱ", "ㄴ", "ㄷ", "ㄷㄷ", "ㄹ", "ㅁ", "ㅂ", "ㅂㅂ", "ㅅ", "ㅅㅅ", "ㅇ", "ㅈ", "ㅈㅈ", "ㅊ",
+    "ㅋ", "ㅌ", "ㅍ", "ㅎ"
+  };
+  private static final String[] MEDIALS = {
+    "ㅏ", "ㅐ", "ㅑ", "ㅒ", "ㅓ", "ㅔ", "ㅕ", "ㅖ", "ㅗ", "ㅗㅏ", "ㅗㅐ", "ㅚ", "ㅛ", "ㅜ", "ㅜㅓ",
+    "ㅜㅔ", "ㅟ", "ㅠ", "ㅡ", "ㅢ", "ㅣ"
+  };
+  private static final String[] FINALS = {
+    "", "ㄱ", "ㄱㄱ", "ㄱㅅ", "ㄴ", "ㄴㅈ", "ㄴㅎ", "ㄷ", "ㄹ", "ㄹㄱ", "ㄹㅁ", "ㄹㅂ", "ㄹㅅ", "ㄹㅌ",
+    "ㄹㅍ", "ㄹㅎ", "ㅁ", "ㅂ", "ㅂㅅ", "ㅅ", "ㅅㅅ", "ㅇ", "ㅈ", "ㅊ", "ㅋ", "ㅌ", "ㅍ", "ㅎ"
+  };
+
+  // Compatibility jamo (U+3131..U+3163) to their spelling as letter indices.
+  private static final byte[][] COMPAT_SPELLINGS = new byte[COMPAT_LAST - COMPAT_FIRST + 1][];
+  private static final byte[][] INITIAL_SPELLINGS = new byte[INITIALS.length][];
+  private static final byte[][] MEDIAL_SPELLINGS = new byte[MEDIALS.length][];
+  private static final byte[][] FINAL_SPELLINGS = new byte[FINALS.length][];
+
+  // Compound compatibility jamo typed on their own, followed by their spelling.
+  private static final String[] COMPOUNDS = {
+    "ㄲㄱㄱ", "ㄳㄱㅅ", "ㄵㄴㅈ", "ㄶㄴㅎ", "ㄸㄷㄷ", "ㄺㄹㄱ", "ㄻㄹㅁ", "ㄼㄹㅂ", "ㄽㄹㅅ", "ㄾㄹㅌ",
+    "ㄿㄹㅍ", "ㅀㄹㅎ", "ㅃㅂㅂ", "ㅄㅂㅅ", "ㅆㅅㅅ", "ㅉㅈㅈ", "ㅘㅗㅏ", "ㅙㅗㅐ", "ㅝㅜㅓ", "ㅞㅜㅔ"
+  };
+
+  static {
+    for (int i = 0; i < COUNT; i++) {
+      COMPAT_SPELLINGS[LETTERS[i].charAt(0) - COMPAT_FIRST] = new byte[] {(byte) i};
+    }
+    for (String compound : COMPOUNDS) {
+      COMPAT_SPELLINGS[compound.charAt(0) - COMPAT_FIRST] = toLetters(compound.substring(1));
+    }
+    for (int i = 0; i < INITIALS.length; i++) {
+      INITIAL_SPELLINGS[i] = toLetters(INITIALS[i]);
+    }
+    for (int i = 0; i < MEDIALS.length; i++) {
+      MEDIAL_SPELLINGS[i] = toLetters(MEDIALS[i]);
+    }
+    for (int i = 0; i < FINALS.length; i++) {
+      FINAL_SPELLINGS[i] = toLetters(FINALS[i]);
+    }
+  }
+
+  private Jamo() {}
+
+  /** Returns the letter for a class index, e.g. {@code "ㄱ"} for 0. */
+  public static String letter(int index) {
+    return LETTERS[index];
+  }
+
+  /** Returns the class index of a single compatibility jamo letter, or -1. */
+  public static int indexOf(char letter) {
+    if (letter < COMPAT_FIRST || letter > COMPAT_LAST) {
+      return -1;
+    }
+    byte[] spelling = COMPAT_SPELLINGS[letter - COMPAT_FIRST];
+    return spelling != null && spelling.length == 1 ? spelling[0] : -1;
+  }
+
+  /**
+   * Spells {@code text} as letter indices into {@code out}.
+   *
+   * @return the number of letters written, or -1 if the text contains a character that cannot be
+   *     fingerspelled or {@code out} is too short.
+   */
+  public static int spell(CharSequence text, byte[] out) {
+    int length = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= SYLLABLE_FIRST && c <= SYLLABLE_LAST) {
+        int syllable = c - SYLLABLE_FIRST;
+        length = append(INITIAL_SPELLINGS[syllable / (21 * 28)], out, length);
+        if (length < 0) {
+          return -1;
+        }
+        length = append(MEDIAL_SPELLINGS[(syllable / 28) % 21], out, length);
+        if (length < 0) {
+          return -1;
+        }
+        length = append(FINAL_SPELLINGS[syllable % 28], out, length);
+      } else if (c >= COMPAT_FIRST && c <= COMPAT_LAST) {
+        byte[] spelling = COMPAT_SPELLINGS[c - COMPAT_FIRST];
+        if (spelling == null) {
+          return -1;
+        }
+        length = append(spelling, out, length);
+      } else {
+        return -1;
+      }
+      if (length < 0) {
+        return -1;
+      }
+    }
+    return length;
+  }
+
+  /** Joins letter indices back into a string of compatibility jamo, e.g. for display. */
+  public static String toString(byte[] letters, int offset, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append(LETTERS[letters[offset + i]]);
+    }
+    return builder.toString();
+  }
+
+  private static int append(byte[] spelling, byte[] out, int length) {
+    if (length + spelling.length > out.length) {
+      return -1;
+    }
+    System.arraycopy(spelling, 0, out, length, spelling.length);
+    return length + spelling.length;
+  }
+
+  private static byte[] toLetters(String spelling) {
+    byte[] letters = new byte[spelling.length()];
+    for (int i = 0; i < letters.length; i++) {
+      letters[i] = COMPAT_SPELLINGS[spelling.charAt(i) - COMPAT_FIRST][0];
+    }
+    return letters;
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A character n-gram model over jamo letters, used to rerank classifier output.
+ *
+ * <p>Probabilities are Witten-Bell interpolated: for a context {@code h} seen in training, {@code
+ * P(c|h) = lambda(h) * count(h c) / count(h) + (1 - lambda(h)) * P(c|h')}, where {@code h'} drops
+ * the oldest letter and {@code lambda(h) = count(h) / (count(h) + followers(h))}. The interpolated
+ * value of every seen n-gram and the {@code 1 - lambda} of every seen context are precomputed into
+ * two {@link LongFloatTable}s, so a query is at most {@code order} probes of each table. Unigrams
+ * are add-one smoothed, so every letter keeps a non-zero probability.
+ *
+ * <p>Letters are packed five bits each behind a leading 1 bit into the table keys; words start
+ * with {@code order - 1} begin-of-word symbols. Immutable and safe to share between threads.
+ *
+ * <p>File format, big-endian: {@code int magic "JLM2", int order}, then the n-gram table and the
+ * context table as written by {@link LongFloatTable}.
+ */
+public final class JamoLanguageModel {
+  /** Longest supported n-gram. */
+  public static final int MAX_ORDER = 6;
+
+  private static final int MAGIC = 0x4A4C4D32; // "JLM2"
+  private static final int BEGIN = Jamo.COUNT;
+  private static final int BITS = 5;
+
+  private final int order;
+  // Packed (context, letter) -> interpolated P(letter | context), for every seen n-gram.
+  private final LongFloatTable ngrams;
+  // Packed context -> 1 - lambda(context), for every seen context.
+  private final LongFloatTable contexts;
+
+  private JamoLanguageModel(int order, LongFloatTable ngrams, LongFloatTable contexts) {
+    this.order = order;
+    this.ngrams = ngrams;
+    this.contexts = contexts;
+  }
+
+  /**
+   * Trains a model of the given order on the spellings of {@code words}. Each word counts once:
+   * weighting by frequency would make the few very common words crowd out the letter patterns of
+   * all the others.
+   */
+  public static JamoLanguageModel train(WordList words, int order) {
+    if (order < 1 || order > MAX_ORDER) {
+      throw new IllegalArgumentException("Order must be in [1, " + MAX_ORDER + "]: " + order);
+    }
+    // (context, letter) and context counts, for every order.
+    Map<Long, Double> ngramCounts = new HashMap<>();
+    Map<Long, Double> contextCounts = new HashMap<>();
+    Map<Long, Integer> followers = new HashMap<>();
+    int[] padded = new int[WordList.MAX_SPELLING + MAX_ORDER];
+    for (int w = 0; w < words.size(); w++) {
+      WordList.Entry entry = words.get(w);
+      int length = entry.spelling.length;
+      for (int i = 0; i < order - 1; i++) {
+        padded[i] = BEGIN;
+      }
+      for (int i = 0; i < length; i++) {
+        padded[order - 1 + i] = entry.spelling[i];
+      }
+      for (int i = order - 1; i < order - 1 + length; i++) {
+        for (int k = 0; k < order; k++) {
+          long context = pack(padded, i - k, k);
+          long ngram = (context << BITS) | padded[i];
+          Double previous = ngramCounts.get(ngram);
+          ngramCounts.put(ngram, previous == null ? 1 : previous + 1);
+          Double contextCount = contextCounts.get(context);
+          contextCounts.put(context, contextCount == null ? 1 : contextCount + 1);
+          if (previous == null) {
+            Integer n = followers.get(context);
+            followers.put(context, n == null ? 1 : n + 1);
+          }
+        }
+      }
+    }
+
+    LongFloatTable ngrams = new LongFloatTable(ngramCounts.size() + Jamo.COUNT);
+    LongFloatTable contexts = new LongFloatTable(contextCounts.size());
+    // Unigrams first (add-one), then each higher order interpolates with the one below.
+    double total = contextCounts.containsKey(1L) ? contextCounts.get(1L) : 0;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      Double n = ngramCounts.get((1L << BITS) | c);
+      ngrams.put((1L << BITS) | c, (float) (((n == null ? 0 : n) + 1) / (total + Jamo.COUNT)));
+    }
+    JamoLanguageModel model = new JamoLanguageModel(order, ngrams, contexts);
+    for (int k = 1; k < order; k++) {
+      long top = 1L << (BITS * k);
+      for (Map.Entry<Long, Double> context : contextCounts.entrySet()) {
+        long key = context.getKey();
+        if (Long.highestOneBit(key) != top) {
+          continue;
+        }
+        double count = context.getValue();
+        double lambda = count / (count + followers.get(key));
+        for (int c = 0; c < Jamo.COUNT; c++) {
+          Double n = ngramCounts.get((key << BITS) | c);
+          if (n != null) {
+            double lower = model.probability(shorten(key), c);
+            ngrams.put((key << BITS) | c, (float) (lambda * n / count + (1 - lambda) * lower));
+          }
+        }
+        contexts.put(key, (float) (1 - lambda));
+      }
+    }
+    return model;
+  }
+
+  public static JamoLanguageModel read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a jamo language model");
+    }
+    int order = data.readInt();
+    if (order < 1 || order > MAX_ORDER) {
+      throw new IOException("Unsupported language model order " + order);
+    }
+    LongFloatTable ngrams = LongFloatTable.read(data);
+    LongFloatTable contexts = LongFloatTable.read(data);
+    return new JamoLanguageModel(order, ngrams, contexts);
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(order);
+    ngrams.write(data);
+    contexts.write(data);
+    data.flush();
+  }
+
+  public int order() {
+    return order;
+  }
+
+  /** P(letter | the last letters of {@code history[0..length)}), within the current word. */
+  public float probability(byte[] history, int length, int letter) {
+    return probability(context(history, length), letter);
+  }
+
+  /**
+   * Multiplies {@code probabilities[offset..offset + Jamo.COUNT)} by {@code P(c | history)^weight}
+   * and renormalizes them.
+   */
+  public void rerank(
+      byte[] history, int length, float[] probabilities, int offset, float weight) {
+    long context = context(history, length);
+    float sum = 0f;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      float p = probabilities[offset + c] * (float) Math.pow(probability(context, c), weight);
+      probabilities[offset + c] = p;
+      sum += p;
+    }
+    if (sum > 0f) {
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        probabilities[offset + c] /= sum;
+      }
+    }
+  }
+
+  /** Packs the last {@code order - 1} letters of the history, padded with begin-of-word. */
+  private long context(byte[] history, int length) {
+    long key = 1;
+    for (int i = length - order + 1; i < length; i++) {
+      key = (key << BITS) | (i < 0 ? BEGIN : history[i]);
+    }
+    return key;
+  }
+
+  /** Backs off from the full context to shorter ones until an n-gram is found. */
+  private float probability(long context, int letter) {
+    float scale = 1f;
+    for (long key = context; ; key = shorten(key)) {
+      float p = ngrams.get((key << BITS) | letter);
+      if (!Float.isNaN(p)) {
+        return scale * p;
+      }
+      float backoff = contexts.get(key);
+      if (!Float.isNaN(backoff)) {
+        scale *= backoff;
+      }
+    }
+  }
+
+  /** Drops the oldest letter of a packed context. */
+  private static long shorten(long key) {
+    long top = Long.highestOneBit(key);
+    return (key & (top - 1)) | (top >>> BITS);
+  }
+
+  /** Packs {@code length} symbols starting at {@code from} behind a leading 1 bit. */
+  private static long pack(int[] symbols, int from, int length) {
+    long key = 1;
+    for (int i = 0; i < length; i++) {
+      key = (key << BITS) | symbols[from + i];
+    }
+    return key;
+  }
+}
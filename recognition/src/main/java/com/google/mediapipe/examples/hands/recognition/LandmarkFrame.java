@@ -0,0 +1,134 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The hands of one camera frame in flat primitive arrays, filled once from the tracker's output
+ * and then read by every stage that needs it.
+ *
+ * <p>Landmarks use the layout of {@link AngleFeatures}: {@link AngleFeatures#LANDMARK_SIZE}
+ * interleaved {@code x, y, z} values per hand, hands back to back, so {@link #landmarks} can be
+ * passed to {@link RecognitionSession#process} as is. World landmarks use the same layout.
+ *
+ * <p>Frames come from a {@link Pool} and are reference counted: a stage that keeps a frame beyond
+ * the call that handed it over must {@link #retain} it, and every holder calls {@link #release}
+ * when done. The last release returns the frame to its pool. A frame must not be written to once
+ * it has been handed to another stage.
+ */
+public final class LandmarkFrame {
+  public static final int MAX_HANDS = 2;
+
+  /** Packet timestamp of the camera frame, in microseconds. */
+  public long timestampUs;
+  public int numHands;
+  /** Whether {@link #worldLandmarks} was filled in for every hand. */
+  public boolean hasWorldLandmarks;
+  public final float[] landmarks = new float[MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+  /** Landmarks in meters, relative to the hand's approximate center. */
+  public final float[] worldLandmarks = new float[MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+  /** Whether each hand was classified as a left hand. */
+  public final boolean[] leftHand = new boolean[MAX_HANDS];
+  public final float[] handednessScore = new float[MAX_HANDS];
+
+  private final Pool pool;
+  private final AtomicInteger references = new AtomicInteger();
+
+  private LandmarkFrame(Pool pool) {
+    this.pool = pool;
+  }
+
+  /** Offset of hand {@code hand}'s landmark {@code landmark} in {@link #landmarks}. */
+  public static int offset(int hand, int landmark) {
+    return hand * AngleFeatures.LANDMARK_SIZE + landmark * 3;
+  }
+
+  public float x(int hand, int landmark) {
+    return landmarks[offset(hand, landmark)];
+  }
+
+  public float y(int hand, int landmark) {
+    return landmarks[offset(hand, landmark) + 1];
+  }
+
+  public float z(int hand, int landmark) {
+    return landmarks[offset(hand, landmark) + 2];
+  }
+
+  /** Adds a holder. Returns this frame. */
+  public LandmarkFrame retain() {
+    if (references.getAndIncrement() <= 0) {
+      references.decrementAndGet();
+      throw new IllegalStateException("Frame was already released");
+    }
+    return this;
+  }
+
+  /** Drops a holder; the last one returns the frame to its pool. */
+  public void release() {
+    int left = references.decrementAndGet();
+    if (left == 0) {
+      pool.recycle(this);
+    } else if (left < 0) {
+      throw new IllegalStateException("Frame released more often than retained");
+    }
+  }
+
+  /**
+   * A bounded free list of frames. Thread-safe: frames are usually filled on the result thread and
+   * released on others.
+   */
+  public static final class Pool {
+    private final int capacity;
+    private final ArrayDeque<LandmarkFrame> free;
+    private int created;
+
+    /** @param capacity most frames kept for reuse; more may be in use at once. */
+    public Pool(int capacity) {
+      this.capacity = capacity;
+      this.free = new ArrayDeque<>(capacity);
+    }
+
+    /** Takes an empty frame with one reference, owned by the caller. */
+    public LandmarkFrame acquire() {
+      LandmarkFrame frame;
+      synchronized (this) {
+        frame = free.pollFirst();
+        if (frame == null) {
+          created++;
+          frame = new LandmarkFrame(this);
+        }
+      }
+      frame.timestampUs = 0L;
+      frame.numHands = 0;
+      frame.hasWorldLandmarks = false;
+      frame.references.set(1);
+      return frame;
+    }
+
+    /** Number of frames this pool has allocated, in use or free. */
+    public synchronized int created() {
+      return created;
+    }
+
+    private synchronized void recycle(LandmarkFrame frame) {
+      if (free.size() < capacity) {
+        free.addFirst(frame);
+      }
+    }
+  }
+}
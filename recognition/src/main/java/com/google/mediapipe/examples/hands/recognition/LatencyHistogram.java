@@ -0,0 +1,114 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size latency histogram with buckets a quarter octave wide, from 1 microsecond to about a
+ * minute. Recording does not allocate; percentiles are accurate to within one bucket (~19%).
+ */
+public final class LatencyHistogram {
+  private static final int SUB_BUCKETS = 4;
+  private static final int NUM_BUCKETS = 26 * SUB_BUCKETS;
+
+  private final long[] buckets = new long[NUM_BUCKETS];
+  private long count;
+  private long totalNanos;
+  private long maxNanos;
+
+  public synchronized void record(long nanos) {
+    long micros = Math.max(1L, nanos / 1000L);
+    int octave = 63 - Long.numberOfLeadingZeros(micros);
+    int sub = octave == 0 ? 0 : (int) ((micros >>> Math.max(0, octave - 2)) & (SUB_BUCKETS - 1));
+    buckets[Math.min(NUM_BUCKETS - 1, octave * SUB_BUCKETS + sub)]++;
+    count++;
+    totalNanos += nanos;
+    maxNanos = Math.max(maxNanos, nanos);
+  }
+
+  public synchronized long count() {
+    return count;
+  }
+
+  public synchronized double meanMillis() {
+    return count == 0 ? 0 : totalNanos / 1e6 / count;
+  }
+
+  public synchronized double maxMillis() {
+    return maxNanos / 1e6;
+  }
+
+  /** Upper bound of the bucket holding the given percentile (0..100), in milliseconds. */
+  public synchronized double percentileMillis(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += buckets[i];
+      if (seen >= Math.max(1, rank)) {
+        return Math.min(upperBoundMicros(i) / 1000.0, maxMillis());
+      }
+    }
+    return maxMillis();
+  }
+
+  /** Adds all samples of {@code other} into this histogram. */
+  public void add(LatencyHistogram other) {
+    long[] otherBuckets;
+    long otherCount;
+    long otherTotal;
+    long otherMax;
+    synchronized (other) {
+      otherBuckets = other.buckets.clone();
+      otherCount = other.count;
+      otherTotal = other.totalNanos;
+      otherMax = other.maxNanos;
+    }
+    synchronized (this) {
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        buckets[i] += otherBuckets[i];
+      }
+      count += otherCount;
+      totalNanos += otherTotal;
+      maxNanos = Math.max(maxNanos, otherMax);
+    }
+  }
+
+  public synchronized void reset() {
+    Arrays.fill(buckets, 0);
+    count = 0;
+    totalNanos = 0;
+    maxNanos = 0;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+        count, meanMillis(), percentileMillis(50), percentileMillis(99), maxMillis());
+  }
+
+  private static double upperBoundMicros(int bucket) {
+    int octave = bucket / SUB_BUCKETS;
+    int sub = bucket % SUB_BUCKETS;
+    if (octave < 2) {
+      return 1L << (octave + 1);
+    }
+    return (1L << octave) + ((long) (sub + 1) << (octave - 2));
+  }
+}
@@ -0,0 +1,99 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * Turns the per-frame best letter into committed letters.
+ *
+ * <p>A letter is committed once it has been the confident best guess for {@code holdFrames}
+ * consecutive frames. It is not committed again until a different letter is held or the hand
+ * leaves the view, so holding a sign does not repeat it.
+ */
+public final class LetterDecoder {
+  /** Longest spelled sequence kept; older letters are dropped. */
+  public static final int MAX_LETTERS = 32;
+
+  private final int holdFrames;
+  private final float minConfidence;
+
+  private final byte[] letters = new byte[MAX_LETTERS];
+  private int length;
+  private int candidate = -1;
+  private int candidateFrames;
+  private int lastCommitted = -1;
+
+  public LetterDecoder(int holdFrames, float minConfidence) {
+    this.holdFrames = holdFrames;
+    this.minConfidence = minConfidence;
+  }
+
+  /**
+   * Feeds the best letter of one frame.
+   *
+   * @return the letter committed by this frame, or -1.
+   */
+  public int accept(int letter, float confidence) {
+    if (confidence < minConfidence) {
+      candidate = -1;
+      candidateFrames = 0;
+      return -1;
+    }
+    if (letter != candidate) {
+      candidate = letter;
+      candidateFrames = 0;
+    }
+    candidateFrames++;
+    if (candidateFrames != holdFrames || letter == lastCommitted) {
+      return -1;
+    }
+    lastCommitted = letter;
+    if (length == MAX_LETTERS) {
+      System.arraycopy(letters, 1, letters, 0, MAX_LETTERS - 1);
+      length--;
+    }
+    letters[length++] = (byte) letter;
+    return letter;
+  }
+
+  /** Reports a frame without a hand, which allows the last letter to be committed again. */
+  public void noHand() {
+    candidate = -1;
+    candidateFrames = 0;
+    lastCommitted = -1;
+  }
+
+  /** Removes the last committed letter, e.g. for a delete button. */
+  public void deleteLast() {
+    if (length > 0) {
+      length--;
+    }
+    lastCommitted = -1;
+  }
+
+  public void clear() {
+    length = 0;
+    noHand();
+  }
+
+  /** Number of committed letters. */
+  public int length() {
+    return length;
+  }
+
+  /** The committed letters, valid up to {@link #length()}. Do not modify. */
+  public byte[] letters() {
+    return letters;
+  }
+}
@@ -0,0 +1,73 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+
+/**
+ * Compiles a text word list (see {@link WordList}) into a {@link MappedLexicon} file and,
+ * optionally, a {@link JamoLanguageModel} trained on the same words.
+ *
+ * <pre>
+ * --words=FILE   UTF-8 word list, one word per line with an optional tab and frequency
+ * --out=FILE     lexicon to write
+ * --lm=FILE      language model to write
+ * --order=N      language model order, default 3
+ * </pre>
+ */
+public final class LexiconBuilder {
+
+  private LexiconBuilder() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = RecognitionServer.parseOptions(args);
+    if (!options.containsKey("words") || !options.containsKey("out")) {
+      System.err.println("Usage: --words=<word list> --out=<lexicon>");
+      System.exit(2);
+    }
+    WordList words;
+    try (InputStream in = new FileInputStream(options.get("words"))) {
+      words = WordList.read(in);
+    }
+    File out = create(options.get("out"));
+    try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(out))) {
+      MappedLexicon.write(words, stream);
+    }
+    System.out.printf("%d words, %d bytes -> %s%n", words.size(), out.length(), out);
+    if (options.containsKey("lm")) {
+      int order = Integer.parseInt(options.getOrDefault("order", "3"));
+      File lm = create(options.get("lm"));
+      try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(lm))) {
+        JamoLanguageModel.train(words, order).write(stream);
+      }
+      System.out.printf("order %d language model, %d bytes -> %s%n", order, lm.length(), lm);
+    }
+  }
+
+  private static File create(String path) {
+    File file = new File(path);
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IllegalStateException("Could not create " + parent);
+    }
+    return file;
+  }
+}
@@ -0,0 +1,122 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash map from non-zero {@code long} keys to {@code float} values, stored in
+ * two primitive arrays with linear probing. Key 0 marks an empty slot. The table is at most half
+ * full, so a lookup usually touches one or two slots. Serialized as its entries in ascending key
+ * order, without the empty slots; reading rebuilds the table.
+ */
+final class LongFloatTable {
+  private final long[] keys;
+  private final float[] values;
+  private final int mask;
+  private final int shift;
+  private int size;
+
+  /** A table with room for {@code expected} keys. */
+  LongFloatTable(int expected) {
+    int capacity = 4;
+    while (capacity < 2 * expected) {
+      capacity <<= 1;
+    }
+    keys = new long[capacity];
+    values = new float[capacity];
+    mask = capacity - 1;
+    shift = 64 - Integer.numberOfTrailingZeros(capacity);
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** The value for {@code key}, or NaN if it is absent. */
+  float get(long key) {
+    for (int i = slot(key); ; i = (i + 1) & mask) {
+      long k = keys[i];
+      if (k == key) {
+        return values[i];
+      }
+      if (k == 0) {
+        return Float.NaN;
+      }
+    }
+  }
+
+  void put(long key, float value) {
+    if (key == 0) {
+      throw new IllegalArgumentException("Key 0 is reserved");
+    }
+    int i = slot(key);
+    while (keys[i] != 0 && keys[i] != key) {
+      i = (i + 1) & mask;
+    }
+    if (keys[i] == 0) {
+      if (2 * (size + 1) > keys.length) {
+        throw new IllegalStateException("Table is full");
+      }
+      keys[i] = key;
+      size++;
+    }
+    values[i] = value;
+  }
+
+  /** Writes {@code int size}, then {@code size} pairs of {@code long key, float value}. */
+  void write(DataOutputStream out) throws IOException {
+    long[] sorted = new long[size];
+    int n = 0;
+    for (long key : keys) {
+      if (key != 0) {
+        sorted[n++] = key;
+      }
+    }
+    Arrays.sort(sorted);
+    out.writeInt(size);
+    for (long key : sorted) {
+      out.writeLong(key);
+      out.writeFloat(get(key));
+    }
+  }
+
+  static LongFloatTable read(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    // Far more than any jamo model needs; a corrupt size must not allocate gigabytes.
+    if (size < 0 || size > 1 << 24) {
+      throw new IOException("Bad hash table size " + size);
+    }
+    LongFloatTable table = new LongFloatTable(size);
+    long previous = 0;
+    for (int i = 0; i < size; i++) {
+      long key = in.readLong();
+      if (key == 0 || (i > 0 && key <= previous)) {
+        throw new IOException("Hash table keys out of order at entry " + i);
+      }
+      table.put(key, in.readFloat());
+      previous = key;
+    }
+    return table;
+  }
+
+  private int slot(long key) {
+    // Fibonacci hashing: the top bits of the product spread the small packed keys evenly.
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+  }
+}
@@ -0,0 +1,232 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A prebuilt word list read in place from a (usually memory-mapped) buffer.
+ *
+ * <p>Opening a lexicon only checks its header, and queries binary-search the sorted spellings and
+ * scan the frequency table directly in the buffer, so neither startup time nor heap use grows with
+ * the number of words. Only the returned words are decoded into strings. Safe to share between
+ * threads.
+ *
+ * <p>A prefix of one or two letters matches a large share of the lexicon, so the best {@link
+ * #CACHED_COMPLETIONS} words of each such prefix are kept after its first query; later queries
+ * for it do not scan the frequency table again. The cache holds at most {@code 31 + 31 * 31}
+ * small arrays.
+ *
+ * <p>File format, big-endian: {@code int magic "JLX1", int count, int reserved, int reserved},
+ * {@code int[count]} absolute record offsets, {@code int[count]} frequencies, then one record per
+ * word in spelling order: {@code byte spellingLength, byte[] spelling (Jamo indices), short
+ * utf8Length, byte[] utf8}. Build one with {@link #write} or {@link LexiconBuilder}.
+ */
+public final class MappedLexicon implements Autocomplete {
+  private static final int MAGIC = 0x4A4C5831; // "JLX1"
+  private static final int HEADER_SIZE = 16;
+  /** Completions kept per cached short prefix; larger requests scan the lexicon. */
+  public static final int CACHED_COMPLETIONS = 16;
+  private static final int MAX_CACHED_PREFIX = 2;
+
+  private final ByteBuffer buffer;
+  private final int count;
+  private final int frequenciesOffset;
+  // Best entries of each one or two letter prefix, in rank order; see prefixSlot().
+  private final AtomicReferenceArray<int[]> shortPrefixes =
+      new AtomicReferenceArray<>(Jamo.COUNT + Jamo.COUNT * Jamo.COUNT);
+
+  private MappedLexicon(ByteBuffer buffer, int count) {
+    this.buffer = buffer;
+    this.count = count;
+    this.frequenciesOffset = HEADER_SIZE + 4 * count;
+  }
+
+  /** Uses {@code buffer} from its position onwards without copying it. */
+  public static MappedLexicon wrap(ByteBuffer buffer) throws IOException {
+    ByteBuffer view = buffer.slice();
+    if (view.capacity() < HEADER_SIZE || view.getInt(0) != MAGIC) {
+      throw new IOException("Not a lexicon");
+    }
+    int count = view.getInt(4);
+    if (count < 0 || view.capacity() < HEADER_SIZE + 8L * count) {
+      throw new IOException("Truncated lexicon");
+    }
+    return new MappedLexicon(view, count);
+  }
+
+  /** Maps a lexicon file read-only. */
+  public static MappedLexicon map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /** Writes {@code words} in the lexicon format. */
+  public static void write(WordList words, OutputStream out) throws IOException {
+    int count = words.size();
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    DataOutputStream recordData = new DataOutputStream(records);
+    int[] offsets = new int[count];
+    int base = HEADER_SIZE + 8 * count;
+    for (int i = 0; i < count; i++) {
+      WordList.Entry entry = words.get(i);
+      byte[] utf8 = entry.word.getBytes(StandardCharsets.UTF_8);
+      if (utf8.length > 0xFFFF) {
+        throw new IOException("Word too long for lexicon: " + entry.word);
+      }
+      offsets[i] = base + recordData.size();
+      recordData.writeByte(entry.spelling.length);
+      recordData.write(entry.spelling);
+      recordData.writeShort(utf8.length);
+      recordData.write(utf8);
+    }
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(count);
+    data.writeInt(0);
+    data.writeInt(0);
+    for (int offset : offsets) {
+      data.writeInt(offset);
+    }
+    for (int i = 0; i < count; i++) {
+      data.writeInt(words.get(i).frequency);
+    }
+    records.writeTo(data);
+    data.flush();
+  }
+
+  public int size() {
+    return count;
+  }
+
+  /** Decodes the word at {@code index} in spelling order. */
+  public String word(int index) {
+    int record = buffer.getInt(HEADER_SIZE + 4 * index);
+    int utf8Offset = record + 1 + (buffer.get(record) & 0xFF);
+    byte[] utf8 = new byte[buffer.getShort(utf8Offset) & 0xFFFF];
+    for (int i = 0; i < utf8.length; i++) {
+      utf8[i] = buffer.get(utf8Offset + 2 + i);
+    }
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  public int frequency(int index) {
+    return buffer.getInt(frequenciesOffset + 4 * index);
+  }
+
+  /** Number of letters in the spelling of the word at {@code index}. */
+  int spellingLength(int index) {
+    return buffer.get(buffer.getInt(HEADER_SIZE + 4 * index)) & 0xFF;
+  }
+
+  /** Letter {@code position} of the spelling of the word at {@code index}. */
+  int letter(int index, int position) {
+    return buffer.get(buffer.getInt(HEADER_SIZE + 4 * index) + 1 + position) & 0xFF;
+  }
+
+  @Override
+  public int complete(byte[] letters, int length, String[] out) {
+    int slot = prefixSlot(letters, length);
+    int[] indices;
+    int found;
+    if (slot >= 0 && out.length <= CACHED_COMPLETIONS) {
+      indices = shortPrefixes.get(slot);
+      if (indices == null) {
+        indices = best(letters, length, CACHED_COMPLETIONS);
+        shortPrefixes.set(slot, indices);
+      }
+      found = Math.min(indices.length, out.length);
+    } else {
+      indices = best(letters, length, out.length);
+      found = indices.length;
+    }
+    for (int i = 0; i < found; i++) {
+      out[i] = word(indices[i]);
+    }
+    return found;
+  }
+
+  /** The {@code capacity} most frequent entries starting with the prefix, best first. */
+  private int[] best(byte[] letters, int length, int capacity) {
+    int from = bound(letters, length, false);
+    int to = bound(letters, length, true);
+    int[] indices = new int[capacity];
+    float[] scores = new float[capacity];
+    int found = 0;
+    for (int i = from; i < to; i++) {
+      found = TopWords.offer(i, frequency(i), indices, scores, found);
+    }
+    return found == capacity ? indices : Arrays.copyOf(indices, found);
+  }
+
+  /** Cache slot of a one or two letter prefix, or -1 for other prefixes. */
+  private static int prefixSlot(byte[] letters, int length) {
+    if (length < 1 || length > MAX_CACHED_PREFIX) {
+      return -1;
+    }
+    int first = letters[0] & 0xFF;
+    if (first >= Jamo.COUNT) {
+      return -1;
+    }
+    if (length == 1) {
+      return first;
+    }
+    int second = letters[1] & 0xFF;
+    return second < Jamo.COUNT ? Jamo.COUNT + first * Jamo.COUNT + second : -1;
+  }
+
+  /**
+   * The first entry whose spelling, cut to {@code length} letters, is not below the prefix, or
+   * with {@code upper} the first one above it.
+   */
+  private int bound(byte[] letters, int length, boolean upper) {
+    int lo = 0;
+    int hi = count;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      int c = comparePrefix(mid, letters, length);
+      if (c < 0 || (upper && c == 0)) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private int comparePrefix(int index, byte[] letters, int length) {
+    int record = buffer.getInt(HEADER_SIZE + 4 * index);
+    int keyLength = Math.min(buffer.get(record) & 0xFF, length);
+    for (int i = 0; i < keyLength; i++) {
+      int c = (buffer.get(record + 1 + i) & 0xFF) - (letters[i] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return keyLength - length;
+  }
+}
@@ -0,0 +1,220 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Groups classifier invocations from many sessions into batches.
+ *
+ * <p>Each worker thread owns one {@link Classifier}. A worker takes the oldest pending request and
+ * then keeps collecting until it has {@code maxBatch} requests or the oldest one has waited {@code
+ * maxWaitNanos}, so a lone session pays at most the max-wait in extra latency while busy servers
+ * amortize each invocation over a full batch.
+ *
+ * <p>{@link #close} fails every request that has not been classified yet, so no caller stays
+ * blocked in {@link #classify}. A batch on which the classifier throws fails the same way rather
+ * than returning empty probabilities.
+ */
+public final class MicroBatcher implements AutoCloseable {
+  private static final Logger logger = Logger.getLogger(MicroBatcher.class.getName());
+
+  /** One feature vector waiting for classification. Reused by its session for every frame. */
+  public static final class Request {
+    final float[] features = new float[AngleFeatures.SIZE];
+    final float[] probabilities = new float[Jamo.COUNT];
+    long enqueuedNanos;
+    private boolean done;
+    private boolean failed;
+    private RuntimeException failure;
+
+    public float[] features() {
+      return features;
+    }
+
+    public float[] probabilities() {
+      return probabilities;
+    }
+
+    synchronized void complete() {
+      done = true;
+      notifyAll();
+    }
+
+    /** Wakes the caller without probabilities, because the batcher was closed. */
+    synchronized void fail() {
+      fail(null);
+    }
+
+    /** Wakes the caller without probabilities, because the classifier threw {@code cause}. */
+    synchronized void fail(RuntimeException cause) {
+      done = true;
+      failed = true;
+      failure = cause;
+      notifyAll();
+    }
+
+    synchronized void await() throws InterruptedException {
+      while (!done) {
+        wait();
+      }
+      if (failure != null) {
+        throw new RejectedExecutionException("Classifier failed", failure);
+      }
+      if (failed) {
+        throw new RejectedExecutionException("Batcher was closed");
+      }
+    }
+  }
+
+  private final BlockingQueue<Request> queue;
+  private final int maxBatch;
+  private final long maxWaitNanos;
+  private final Classifier[] classifiers;
+  private final Thread[] workers;
+  private final AtomicLong frames = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+  private volatile boolean closed;
+
+  public MicroBatcher(Classifier[] classifiers, int maxBatch, long maxWaitNanos, int queueSize) {
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.maxBatch = maxBatch;
+    this.maxWaitNanos = maxWaitNanos;
+    this.classifiers = classifiers.clone();
+    this.workers = new Thread[classifiers.length];
+    for (int i = 0; i < classifiers.length; i++) {
+      Classifier classifier = classifiers[i];
+      workers[i] = new Thread(() -> runWorker(classifier), "micro-batcher-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Classifies {@code request.features()} and blocks until its probabilities are ready.
+   *
+   * @throws RejectedExecutionException if the batcher is or gets closed before the request was
+   *     classified, or if the classifier failed on its batch.
+   */
+  public void classify(Request request) throws InterruptedException {
+    if (closed) {
+      throw new RejectedExecutionException("Batcher was closed");
+    }
+    synchronized (request) {
+      request.done = false;
+      request.failed = false;
+      request.failure = null;
+    }
+    request.enqueuedNanos = System.nanoTime();
+    queue.put(request);
+    if (closed) {
+      // close() may have drained the queue before this request went in.
+      failPending();
+    }
+    request.await();
+  }
+
+  /** Total feature vectors classified. */
+  public long frames() {
+    return frames.get();
+  }
+
+  /** The classifier of each worker. */
+  public Classifier[] classifiers() {
+    return classifiers.clone();
+  }
+
+  /** Total classifier invocations. */
+  public long batches() {
+    return batches.get();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    failPending();
+  }
+
+  private void failPending() {
+    Request request;
+    while ((request = queue.poll()) != null) {
+      request.fail();
+    }
+  }
+
+  private void runWorker(Classifier classifier) {
+    Request[] batch = new Request[maxBatch];
+    float[] features = new float[maxBatch * AngleFeatures.SIZE];
+    float[] probabilities = new float[maxBatch * Jamo.COUNT];
+    while (!closed) {
+      int n = 0;
+      try {
+        Request first = queue.take();
+        batch[n++] = first;
+        long deadline = first.enqueuedNanos + maxWaitNanos;
+        while (n < maxBatch) {
+          long remaining = deadline - System.nanoTime();
+          Request next =
+              remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+          if (next == null) {
+            break;
+          }
+          batch[n++] = next;
+        }
+        for (int i = 0; i < n; i++) {
+          System.arraycopy(
+              batch[i].features, 0, features, i * AngleFeatures.SIZE, AngleFeatures.SIZE);
+        }
+        classifier.classify(features, n, probabilities);
+        for (int i = 0; i < n; i++) {
+          System.arraycopy(probabilities, i * Jamo.COUNT, batch[i].probabilities, 0, Jamo.COUNT);
+        }
+        frames.addAndGet(n);
+        batches.incrementAndGet();
+      } catch (InterruptedException e) {
+        if (!closed) {
+          logger.log(Level.WARNING, "Batch worker interrupted", e);
+        }
+        // Requests taken for an unfinished batch have no probabilities.
+        for (int i = 0; i < n; i++) {
+          batch[i].fail();
+          batch[i] = null;
+        }
+        n = 0;
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Classifier failed on a batch of " + n, e);
+        for (int i = 0; i < n; i++) {
+          batch[i].fail(e);
+          batch[i] = null;
+        }
+        n = 0;
+      } finally {
+        for (int i = 0; i < n; i++) {
+          batch[i].complete();
+          batch[i] = null;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,265 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Classifies feature vectors by their distance to one centroid per letter.
+ *
+ * <p>Features are standardized per dimension before measuring squared Euclidean distance, so the
+ * palm angle and the joint angles weigh alike. Costs one pass over {@code 31 x 16} floats.
+ *
+ * <p>The model also carries the thresholds the {@link CascadeClassifier} uses to decide whether a
+ * frame is confident: the ratio between the nearest and second nearest squared distance, and an
+ * upper bound on the nearest distance that rejects poses unlike anything seen in training.
+ *
+ * <p>Scores are {@code exp(-sharpness * d)} over the squared distances {@code d}, normalized to sum
+ * to one. They stand in for the model's probabilities on the frames the first stage answers, so
+ * {@link CascadeEvaluation} fits the sharpness to the model's output on those frames. Before that,
+ * {@link #DEFAULT_SHARPNESS} treats each letter as a unit Gaussian in the standardized features.
+ *
+ * <p>Binary format, big-endian: magic {@code "NCC2"}, {@code int classes, int dims}, {@code
+ * float[dims]} per-dimension scale, {@code float[classes * dims]} centroids (already scaled),
+ * {@code float acceptRatio, float maxDistance, float sharpness}.
+ */
+public final class NearestCentroidClassifier implements Classifier {
+  public static final float DEFAULT_SHARPNESS = 0.5f;
+
+  private static final int MAGIC = 0x4E434332; // "NCC2"
+
+  private final float[] scale;
+  private final float[] centroids;
+  private final float acceptRatio;
+  private final float maxDistance;
+  private final float sharpness;
+  private final float[] distances = new float[Jamo.COUNT];
+
+  NearestCentroidClassifier(
+      float[] scale, float[] centroids, float acceptRatio, float maxDistance, float sharpness) {
+    this.scale = scale;
+    this.centroids = centroids;
+    this.acceptRatio = acceptRatio;
+    this.maxDistance = maxDistance;
+    this.sharpness = sharpness;
+  }
+
+  /**
+   * Fits centroids to labelled samples.
+   *
+   * @param features {@code count} feature vectors back to back.
+   * @param labels letter index of each vector.
+   */
+  public static NearestCentroidClassifier train(float[] features, int[] labels, int count) {
+    int dims = AngleFeatures.SIZE;
+    double[] mean = new double[dims];
+    double[] meanSquare = new double[dims];
+    for (int i = 0; i < count; i++) {
+      for (int j = 0; j < dims; j++) {
+        double v = features[i * dims + j];
+        mean[j] += v;
+        meanSquare[j] += v * v;
+      }
+    }
+    float[] scale = new float[dims];
+    for (int j = 0; j < dims; j++) {
+      mean[j] /= Math.max(1, count);
+      double variance = meanSquare[j] / Math.max(1, count) - mean[j] * mean[j];
+      scale[j] = variance > 1e-6 ? (float) (1.0 / Math.sqrt(variance)) : 1f;
+    }
+    double[] sums = new double[Jamo.COUNT * dims];
+    int[] counts = new int[Jamo.COUNT];
+    for (int i = 0; i < count; i++) {
+      counts[labels[i]]++;
+      for (int j = 0; j < dims; j++) {
+        sums[labels[i] * dims + j] += features[i * dims + j] * scale[j];
+      }
+    }
+    float[] centroids = new float[Jamo.COUNT * dims];
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      for (int j = 0; j < dims; j++) {
+        // Letters without samples sit at infinity so they are never the nearest.
+        centroids[c * dims + j] =
+            counts[c] == 0 ? Float.POSITIVE_INFINITY : (float) (sums[c * dims + j] / counts[c]);
+      }
+    }
+    return new NearestCentroidClassifier(
+        scale, centroids, 0f, Float.POSITIVE_INFINITY, DEFAULT_SHARPNESS);
+  }
+
+  /** Returns a copy with different confidence thresholds. */
+  public NearestCentroidClassifier withThresholds(float acceptRatio, float maxDistance) {
+    return new NearestCentroidClassifier(scale, centroids, acceptRatio, maxDistance, sharpness);
+  }
+
+  /** Returns a copy whose scores are {@code exp(-sharpness * d)}. */
+  public NearestCentroidClassifier withSharpness(float sharpness) {
+    return new NearestCentroidClassifier(scale, centroids, acceptRatio, maxDistance, sharpness);
+  }
+
+  public float sharpness() {
+    return sharpness;
+  }
+
+  /** Largest ratio of the nearest to the second nearest squared distance that is confident. */
+  public float acceptRatio() {
+    return acceptRatio;
+  }
+
+  /** Largest squared distance to the nearest centroid that is confident. */
+  public float maxDistance() {
+    return maxDistance;
+  }
+
+  public static NearestCentroidClassifier read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a nearest-centroid model");
+    }
+    int classes = data.readInt();
+    int dims = data.readInt();
+    if (classes != Jamo.COUNT || dims != AngleFeatures.SIZE) {
+      throw new IOException("Unexpected model shape " + dims + " -> " + classes);
+    }
+    float[] scale = new float[dims];
+    for (int j = 0; j < dims; j++) {
+      scale[j] = data.readFloat();
+    }
+    float[] centroids = new float[classes * dims];
+    for (int i = 0; i < centroids.length; i++) {
+      centroids[i] = data.readFloat();
+    }
+    float acceptRatio = data.readFloat();
+    float maxDistance = data.readFloat();
+    float sharpness = data.readFloat();
+    return new NearestCentroidClassifier(scale, centroids, acceptRatio, maxDistance, sharpness);
+  }
+
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(Jamo.COUNT);
+    data.writeInt(AngleFeatures.SIZE);
+    for (float s : scale) {
+      data.writeFloat(s);
+    }
+    for (float c : centroids) {
+      data.writeFloat(c);
+    }
+    data.writeFloat(acceptRatio);
+    data.writeFloat(maxDistance);
+    data.writeFloat(sharpness);
+    data.flush();
+  }
+
+  /** A copy of this classifier with its own scratch space, for use on another thread. */
+  public NearestCentroidClassifier copy() {
+    return new NearestCentroidClassifier(scale, centroids, acceptRatio, maxDistance, sharpness);
+  }
+
+  @Override
+  public void classify(float[] features, int count, float[] probabilities) {
+    for (int i = 0; i < count; i++) {
+      classifyOne(features, i * AngleFeatures.SIZE, probabilities, i * Jamo.COUNT);
+    }
+  }
+
+  /**
+   * Classifies one vector and writes its probabilities.
+   *
+   * @return whether the nearest centroid is confident under this model's thresholds.
+   */
+  public boolean classifyOne(
+      float[] features, int offset, float[] probabilities, int probabilitiesOffset) {
+    int dims = AngleFeatures.SIZE;
+    float nearest = Float.POSITIVE_INFINITY;
+    float second = Float.POSITIVE_INFINITY;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      float d = 0f;
+      int base = c * dims;
+      for (int j = 0; j < dims; j++) {
+        float diff = features[offset + j] * scale[j] - centroids[base + j];
+        d += diff * diff;
+      }
+      distances[c] = d;
+      if (d < nearest) {
+        second = nearest;
+        nearest = d;
+      } else if (d < second) {
+        second = d;
+      }
+    }
+    scores(distances, 0, sharpness, probabilities, probabilitiesOffset);
+    return nearest <= maxDistance && nearest <= acceptRatio * second;
+  }
+
+  /**
+   * Writes the normalized {@code exp(-sharpness * d)} of {@link Jamo#COUNT} squared distances.
+   * Shifting by the nearest distance keeps the exponent from underflowing.
+   */
+  static void scores(
+      float[] distances, int offset, float sharpness, float[] out, int outOffset) {
+    float nearest = Float.POSITIVE_INFINITY;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      nearest = Math.min(nearest, distances[offset + c]);
+    }
+    float sum = 0f;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      float p = (float) Math.exp(-sharpness * (distances[offset + c] - nearest));
+      out[outOffset + c] = p;
+      sum += p;
+    }
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      out[outOffset + c] /= sum;
+    }
+  }
+
+  /** Squared distances of the last classified vector to each centroid. */
+  void lastDistances(float[] out, int offset) {
+    System.arraycopy(distances, 0, out, offset, Jamo.COUNT);
+  }
+
+  /** Squared distance to the nearest centroid and the ratio to the runner-up, for calibration. */
+  float[] nearestAndRatio(float[] features, int offset, float[] scratch) {
+    classifyOne(features, offset, scratch, 0);
+    float nearest = Float.POSITIVE_INFINITY;
+    float second = Float.POSITIVE_INFINITY;
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      float d = distances[c];
+      if (d < nearest) {
+        second = nearest;
+        nearest = d;
+      } else if (d < second) {
+        second = d;
+      }
+    }
+    return new float[] {nearest, second > 0 ? nearest / second : 1f};
+  }
+
+  /** Index of the nearest centroid for the last classified vector. */
+  int lastNearest() {
+    int best = 0;
+    for (int c = 1; c < Jamo.COUNT; c++) {
+      if (distances[c] < distances[best]) {
+        best = c;
+      }
+    }
+    return best;
+  }
+}
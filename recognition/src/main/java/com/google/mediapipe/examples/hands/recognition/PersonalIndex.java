@@ -0,0 +1,213 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A brute-force k-nearest-neighbour index over labelled {@link AngleFeatures} vectors.
+ *
+ * <p>Vectors live in one flat {@code float[]} and labels in one {@code byte[]}, so a lookup over a
+ * few hundred samples is a single linear scan without allocation. {@link #map} only maps the file;
+ * the vectors are copied out of the mapping in one bulk read on the first lookup, so opening the
+ * index at startup costs nothing.
+ *
+ * <p>File format, little-endian: {@code int magic "PKN1", int dims, int count, int reserved},
+ * {@code count} label bytes padded to a multiple of four, then {@code count * dims} floats.
+ */
+public final class PersonalIndex {
+  private static final int MAGIC = 0x314E4B50; // "PKN1" read little-endian
+  private static final int HEADER_SIZE = 16;
+  private static final int DIMS = AngleFeatures.SIZE;
+
+  private float[] vectors;
+  private byte[] labels;
+  private int count;
+  // Set while the samples are still only in the mapped file.
+  private ByteBuffer mapped;
+
+  public PersonalIndex() {
+    vectors = new float[16 * DIMS];
+    labels = new byte[16];
+  }
+
+  /** Maps an index file read-only. Costs no parsing; samples are read on first use. */
+  public static PersonalIndex map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      ByteBuffer buffer =
+          channel
+              .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+              .order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a personal index: " + file);
+      }
+      if (buffer.getInt(4) != DIMS) {
+        throw new IOException("Unexpected vector size " + buffer.getInt(4) + " in " + file);
+      }
+      int count = buffer.getInt(8);
+      if (count < 0 || buffer.capacity() < HEADER_SIZE + padded(count) + (long) count * DIMS * 4) {
+        throw new IOException("Truncated personal index: " + file);
+      }
+      PersonalIndex index = new PersonalIndex();
+      index.count = count;
+      index.mapped = buffer;
+      return index;
+    }
+  }
+
+  /** Writes the index to {@code file}, replacing it atomically. */
+  public void save(File file) throws IOException {
+    load();
+    File tmp = new File(file.getPath() + ".tmp");
+    ByteBuffer buffer =
+        ByteBuffer.allocate(HEADER_SIZE + padded(count) + count * DIMS * 4)
+            .order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(DIMS).putInt(count).putInt(0);
+    buffer.put(labels, 0, count);
+    buffer.position(HEADER_SIZE + padded(count));
+    buffer.asFloatBuffer().put(vectors, 0, count * DIMS);
+    buffer.position(0);
+    try (FileOutputStream out = new FileOutputStream(tmp)) {
+      FileChannel channel = out.getChannel();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      channel.force(true);
+    }
+    if (!tmp.renameTo(file)) {
+      throw new IOException("Could not replace " + file);
+    }
+  }
+
+  /** A copy of the samples, e.g. to save them on another thread while this index changes. */
+  public PersonalIndex copy() {
+    load();
+    PersonalIndex copy = new PersonalIndex();
+    copy.labels = Arrays.copyOf(labels, Math.max(16, count));
+    copy.vectors = Arrays.copyOf(vectors, Math.max(16, count) * DIMS);
+    copy.count = count;
+    return copy;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int label(int index) {
+    load();
+    return labels[index];
+  }
+
+  /** Number of samples stored for a letter. */
+  public int count(int label) {
+    load();
+    int n = 0;
+    for (int i = 0; i < count; i++) {
+      if (labels[i] == label) {
+        n++;
+      }
+    }
+    return n;
+  }
+
+  public void add(float[] features, int offset, int label) {
+    load();
+    if (labels.length == count) {
+      labels = Arrays.copyOf(labels, count * 2);
+      vectors = Arrays.copyOf(vectors, count * 2 * DIMS);
+    }
+    System.arraycopy(features, offset, vectors, count * DIMS, DIMS);
+    labels[count++] = (byte) label;
+  }
+
+  /** Removes every sample of a letter, e.g. before recalibrating it. */
+  public void removeLabel(int label) {
+    load();
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      if (labels[i] == label) {
+        continue;
+      }
+      if (kept != i) {
+        System.arraycopy(vectors, i * DIMS, vectors, kept * DIMS, DIMS);
+        labels[kept] = labels[i];
+      }
+      kept++;
+    }
+    count = kept;
+  }
+
+  /**
+   * Finds the {@code k} nearest samples to a vector by squared Euclidean distance.
+   *
+   * @param indices receives sample indices, nearest first; its length is {@code k}.
+   * @param distances receives the matching squared distances.
+   * @return the number of neighbours found, at most {@code k}.
+   */
+  public int nearest(float[] features, int offset, int[] indices, float[] distances) {
+    load();
+    int k = indices.length;
+    int found = 0;
+    float[] v = vectors;
+    for (int i = 0; i < count; i++) {
+      int base = i * DIMS;
+      float d = 0f;
+      for (int j = 0; j < DIMS; j++) {
+        float diff = features[offset + j] - v[base + j];
+        d += diff * diff;
+      }
+      if (found == k && d >= distances[k - 1]) {
+        continue;
+      }
+      int slot = found == k ? k - 1 : found++;
+      while (slot > 0 && distances[slot - 1] > d) {
+        distances[slot] = distances[slot - 1];
+        indices[slot] = indices[slot - 1];
+        slot--;
+      }
+      distances[slot] = d;
+      indices[slot] = i;
+    }
+    return found;
+  }
+
+  private void load() {
+    ByteBuffer buffer = mapped;
+    if (buffer == null) {
+      return;
+    }
+    int capacity = Math.max(16, count);
+    labels = new byte[capacity];
+    vectors = new float[capacity * DIMS];
+    ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    view.position(HEADER_SIZE);
+    view.get(labels, 0, count);
+    view.position(HEADER_SIZE + padded(count));
+    view.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vectors, 0, count * DIMS);
+    mapped = null;
+  }
+
+  private static int padded(int count) {
+    return (count + 3) & ~3;
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * Blends a classifier's output with a vote of the user's own calibration samples.
+ *
+ * <p>The {@code k} nearest samples in the {@link PersonalIndex} vote for their letter, each
+ * weighted by {@code 1 / (1 + d / bandwidth)}. The vote replaces up to {@code maxWeight} of the
+ * model's distribution, scaled down as the nearest sample gets further away, so poses the user
+ * never calibrated are left to the model. Not thread-safe.
+ */
+public final class PersonalizedClassifier implements Classifier {
+  private final Classifier model;
+  private final int[] neighbours;
+  private final float[] distances;
+  private final float[] votes = new float[Jamo.COUNT];
+  private final float maxWeight;
+  private final float bandwidth;
+  private volatile PersonalIndex index;
+
+  /**
+   * @param k neighbours per lookup.
+   * @param maxWeight share of the result given to the vote when a sample matches exactly.
+   * @param bandwidth squared feature distance (degrees squared) at which a sample's influence
+   *     halves.
+   */
+  public PersonalizedClassifier(
+      Classifier model, PersonalIndex index, int k, float maxWeight, float bandwidth) {
+    this.model = model;
+    this.index = index;
+    this.neighbours = new int[k];
+    this.distances = new float[k];
+    this.maxWeight = maxWeight;
+    this.bandwidth = bandwidth;
+  }
+
+  /** Replaces the index, e.g. after calibration. Takes effect from the next call. */
+  public void setIndex(PersonalIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public void classify(float[] features, int count, float[] probabilities) {
+    model.classify(features, count, probabilities);
+    PersonalIndex current = index;
+    if (current == null || current.size() == 0) {
+      return;
+    }
+    for (int i = 0; i < count; i++) {
+      int found = current.nearest(features, i * AngleFeatures.SIZE, neighbours, distances);
+      if (found == 0) {
+        continue;
+      }
+      float total = 0f;
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        votes[c] = 0f;
+      }
+      for (int n = 0; n < found; n++) {
+        float w = 1f / (1f + distances[n] / bandwidth);
+        votes[current.label(neighbours[n])] += w;
+        total += w;
+      }
+      float weight = maxWeight / (1f + distances[0] / bandwidth);
+      int base = i * Jamo.COUNT;
+      float sum = 0f;
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        sum += probabilities[base + c];
+      }
+      float modelScale = sum > 0f ? (1f - weight) / sum : 0f;
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        probabilities[base + c] = probabilities[base + c] * modelScale + weight * votes[c] / total;
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * A thin client for {@link RecognitionServer}.
+ *
+ * <p>Wire format, big-endian. Each request is an {@code int} hand count followed by {@link
+ * AngleFeatures#LANDMARK_SIZE} floats per hand; a negative count ends the session. Each reply is
+ * {@code int letter, float confidence, int committed, int numCompletions} followed by that many
+ * modified-UTF-8 strings. Completions only change when a letter is committed, so other replies
+ * send -1 for "unchanged" instead of repeating them.
+ */
+public final class RecognitionClient implements AutoCloseable {
+  public static final int MAX_HANDS = 2;
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final RecognitionSession.Frame frame = new RecognitionSession.Frame();
+
+  public RecognitionClient(int port) throws IOException {
+    socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    socket.setTcpNoDelay(true);
+    in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+  }
+
+  /**
+   * Sends one frame and waits for its result. The returned frame is reused by the next call and
+   * carries no probabilities.
+   */
+  public RecognitionSession.Frame recognize(float[] landmarks, int numHands) throws IOException {
+    numHands = Math.min(numHands, MAX_HANDS);
+    out.writeInt(numHands);
+    for (int i = 0; i < numHands * AngleFeatures.LANDMARK_SIZE; i++) {
+      out.writeFloat(landmarks[i]);
+    }
+    out.flush();
+    frame.letter = in.readInt();
+    frame.confidence = in.readFloat();
+    frame.committed = in.readInt();
+    int numCompletions = in.readInt();
+    if (numCompletions < 0) {
+      return frame;
+    }
+    for (int i = 0; i < numCompletions; i++) {
+      String word = in.readUTF();
+      if (i < frame.completions.length) {
+        frame.completions[i] = word;
+      }
+    }
+    frame.numCompletions = Math.min(numCompletions, frame.completions.length);
+    return frame;
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      out.writeInt(-1);
+      out.flush();
+    } finally {
+      socket.close();
+    }
+  }
+
+  static void writeReply(DataOutputStream out, RecognitionSession.Frame frame) throws IOException {
+    out.writeInt(frame.letter);
+    out.writeFloat(frame.confidence);
+    out.writeInt(frame.committed);
+    if (frame.committed < 0) {
+      out.writeInt(-1);
+      return;
+    }
+    out.writeInt(frame.numCompletions);
+    for (int i = 0; i < frame.numCompletions; i++) {
+      out.writeUTF(frame.completions[i]);
+    }
+  }
+}
@@ -0,0 +1,356 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves recognition to many concurrent clients over a loopback socket.
+ *
+ * <p>Each connection is one {@link RecognitionSession}. Clients stream landmark frames and get one
+ * reply per frame (see {@link RecognitionClient} for the wire format). Feature extraction and
+ * decoding run on the connection thread; classification goes through a shared {@link
+ * MicroBatcher}. The server periodically logs aggregate throughput and per-session latency.
+ */
+public final class RecognitionServer implements AutoCloseable {
+  private static final Logger logger = Logger.getLogger(RecognitionServer.class.getName());
+
+  public static final int DEFAULT_PORT = 7420;
+
+  private final ServerSocket serverSocket;
+  private final MicroBatcher batcher;
+  private final Autocomplete autocomplete;
+  private final Map<Integer, Connection> connections = new ConcurrentHashMap<>();
+  private final AtomicInteger nextSessionId = new AtomicInteger();
+  private final LatencyHistogram closedSessions = new LatencyHistogram();
+  private final Thread acceptThread;
+  private final Thread reportThread;
+  private volatile JamoLanguageModel languageModel;
+  private volatile float languageModelWeight;
+  private volatile boolean closed;
+
+  /**
+   * @param port loopback port to listen on, or 0 for any free port.
+   * @param reportIntervalMillis how often to log statistics, or 0 to never log.
+   */
+  public RecognitionServer(
+      int port, MicroBatcher batcher, Autocomplete autocomplete, long reportIntervalMillis)
+      throws IOException {
+    this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+    this.batcher = batcher;
+    this.autocomplete = autocomplete;
+    acceptThread = new Thread(this::acceptLoop, "recognition-accept");
+    acceptThread.start();
+    if (reportIntervalMillis > 0) {
+      reportThread = new Thread(() -> reportLoop(reportIntervalMillis), "recognition-report");
+      reportThread.setDaemon(true);
+      reportThread.start();
+    } else {
+      reportThread = null;
+    }
+  }
+
+  public int port() {
+    return serverSocket.getLocalPort();
+  }
+
+  /** Sets the language model prior for sessions that connect from now on. */
+  public void setLanguageModel(JamoLanguageModel model, float weight) {
+    languageModelWeight = weight;
+    languageModel = model;
+  }
+
+  /** Number of connected sessions. */
+  public int sessions() {
+    return connections.size();
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    serverSocket.close();
+    for (Connection connection : connections.values()) {
+      connection.close();
+    }
+    if (reportThread != null) {
+      reportThread.interrupt();
+    }
+    batcher.close();
+  }
+
+  private void acceptLoop() {
+    while (!closed) {
+      try {
+        Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        Connection connection = new Connection(nextSessionId.incrementAndGet(), socket);
+        connections.put(connection.id, connection);
+        connection.start();
+      } catch (IOException e) {
+        if (!closed) {
+          logger.log(Level.WARNING, "Accept failed", e);
+        }
+      }
+    }
+  }
+
+  private void reportLoop(long intervalMillis) {
+    long lastFrames = batcher.frames();
+    long lastBatches = batcher.batches();
+    long lastNanos = System.nanoTime();
+    while (!closed) {
+      try {
+        Thread.sleep(intervalMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+      long frames = batcher.frames();
+      long batches = batcher.batches();
+      long now = System.nanoTime();
+      double seconds = (now - lastNanos) / 1e9;
+      long batchCount = batches - lastBatches;
+      logger.info(
+          String.format(
+              "sessions=%d throughput=%.1f frames/s mean batch=%.2f",
+              connections.size(),
+              (frames - lastFrames) / seconds,
+              batchCount == 0 ? 0.0 : (double) (frames - lastFrames) / batchCount));
+      for (Connection connection : connections.values()) {
+        logger.info(String.format("session %d: %s", connection.id, connection.latency));
+      }
+      if (closedSessions.count() > 0) {
+        logger.info("closed sessions: " + closedSessions);
+      }
+      for (Classifier classifier : batcher.classifiers()) {
+        if (classifier instanceof CascadeClassifier) {
+          logger.info(classifier.toString());
+        }
+      }
+      lastFrames = frames;
+      lastBatches = batches;
+      lastNanos = now;
+    }
+  }
+
+  /** One client session, served by its own thread. */
+  private final class Connection extends Thread {
+    final int id;
+    final Socket socket;
+    final LatencyHistogram latency = new LatencyHistogram();
+    final RecognitionSession session = new RecognitionSession(null, autocomplete);
+    final MicroBatcher.Request request = new MicroBatcher.Request();
+    final float[] landmarks = new float[RecognitionClient.MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+
+    Connection(int id, Socket socket) {
+      super("recognition-session-" + id);
+      this.id = id;
+      this.socket = socket;
+      session.setLanguageModel(languageModel, languageModelWeight);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try (DataInputStream in =
+              new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+          DataOutputStream out =
+              new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+        while (true) {
+          int numHands = in.readInt();
+          if (numHands < 0) {
+            break;
+          }
+          if (numHands > RecognitionClient.MAX_HANDS) {
+            throw new IOException("Too many hands in frame: " + numHands);
+          }
+          for (int i = 0; i < numHands * AngleFeatures.LANDMARK_SIZE; i++) {
+            landmarks[i] = in.readFloat();
+          }
+          long start = System.nanoTime();
+          RecognitionSession.Frame frame;
+          if (session.extract(landmarks, numHands, request.features(), 0)) {
+            batcher.classify(request);
+            frame = session.decode(request.probabilities(), 0);
+          } else {
+            frame = session.decode(null, 0);
+          }
+          RecognitionClient.writeReply(out, frame);
+          out.flush();
+          latency.record(System.nanoTime() - start);
+        }
+      } catch (EOFException e) {
+        // Client went away without saying goodbye.
+      } catch (IOException e) {
+        if (!closed) {
+          logger.log(Level.WARNING, "Session " + id + " failed", e);
+        }
+      } catch (RejectedExecutionException e) {
+        // The batcher was closed while this session waited for a batch, or the classifier failed.
+        if (!closed) {
+          logger.log(Level.WARNING, "Session " + id + " failed", e);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        connections.remove(id);
+        closedSessions.add(latency);
+        logger.info(String.format("session %d closed: %s", id, latency));
+        close();
+      }
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        logger.log(Level.FINE, "Closing session " + id, e);
+      }
+    }
+  }
+
+  /**
+   * Runs a server until interrupted.
+   *
+   * <pre>
+   * --classifier=CLASS   Classifier implementation with a no-argument constructor
+   * --centroids=FILE     nearest-centroid first stage; cascades into --classifier if both are set
+   * --port=N             loopback port, default 7420
+   * --workers=N          classifier threads, default one per core
+   * --max-batch=N        largest batch per classifier call, default 32
+   * --max-wait-us=N      longest a request waits for a batch to fill, default 2000
+   * --words=FILE         word list for completions, text or a prebuilt .lex lexicon
+   * --confusion=FILE     confusion counts; makes .lex completions error-tolerant
+   * --lm=FILE            jamo language model to rerank classifier output with
+   * --lm-weight=X        exponent of the language model prior, default 0.5
+   * --report-ms=N        statistics interval, default 5000
+   * </pre>
+   */
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = parseOptions(args);
+    String classifierClass = options.get("classifier");
+    NearestCentroidClassifier centroids = null;
+    if (options.containsKey("centroids")) {
+      try (InputStream in = new FileInputStream(options.get("centroids"))) {
+        centroids = NearestCentroidClassifier.read(in);
+      }
+    }
+    if (classifierClass == null && centroids == null) {
+      System.err.println("Missing --classifier=<class implementing Classifier> or --centroids");
+      System.exit(2);
+    }
+    int workers =
+        Integer.parseInt(
+            options.getOrDefault(
+                "workers", String.valueOf(Runtime.getRuntime().availableProcessors())));
+    Classifier[] classifiers = new Classifier[workers];
+    for (int i = 0; i < workers; i++) {
+      Classifier model =
+          classifierClass == null
+              ? null
+              : Class.forName(classifierClass)
+                  .asSubclass(Classifier.class)
+                  .getDeclaredConstructor()
+                  .newInstance();
+      if (centroids == null) {
+        classifiers[i] = model;
+      } else if (model == null) {
+        classifiers[i] = centroids.copy();
+      } else {
+        classifiers[i] = new CascadeClassifier(centroids.copy(), model);
+      }
+    }
+    Autocomplete autocomplete = readAutocomplete(options.get("words"), options.get("confusion"));
+    MicroBatcher batcher =
+        new MicroBatcher(
+            classifiers,
+            Integer.parseInt(options.getOrDefault("max-batch", "32")),
+            TimeUnit.MICROSECONDS.toNanos(
+                Long.parseLong(options.getOrDefault("max-wait-us", "2000"))),
+            4096);
+    RecognitionServer server =
+        new RecognitionServer(
+            Integer.parseInt(options.getOrDefault("port", String.valueOf(DEFAULT_PORT))),
+            batcher,
+            autocomplete,
+            Long.parseLong(options.getOrDefault("report-ms", "5000")));
+    if (options.containsKey("lm")) {
+      try (InputStream in = new BufferedInputStream(new FileInputStream(options.get("lm")))) {
+        server.setLanguageModel(
+            JamoLanguageModel.read(in),
+            Float.parseFloat(options.getOrDefault("lm-weight", "0.5")));
+      }
+    }
+    logger.info("Listening on 127.0.0.1:" + server.port() + " with " + workers + " workers");
+    server.acceptThread.join();
+  }
+
+  /**
+   * Loads completions from a text word list or a prebuilt {@code .lex} lexicon, made error-tolerant
+   * with {@code confusion} counts if given. Returns null if {@code words} is null.
+   */
+  static Autocomplete readAutocomplete(String words, String confusion) throws IOException {
+    if (words == null) {
+      return null;
+    }
+    if (!words.endsWith(".lex")) {
+      try (InputStream in = new FileInputStream(words)) {
+        return WordList.read(in);
+      }
+    }
+    MappedLexicon lexicon = MappedLexicon.map(new File(words));
+    if (confusion == null) {
+      return lexicon;
+    }
+    try (InputStream in = new FileInputStream(confusion)) {
+      return new FuzzyCompleter(lexicon, ConfusionCosts.read(in));
+    }
+  }
+
+  /** Parses {@code --key=value} arguments; a bare {@code --flag} maps to "true". */
+  static Map<String, String> parseOptions(String[] args) {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unexpected argument: " + arg);
+      }
+      int eq = arg.indexOf('=');
+      if (eq < 0) {
+        options.put(arg.substring(2), "true");
+      } else {
+        options.put(arg.substring(2, eq), arg.substring(eq + 1));
+      }
+    }
+    return options;
+  }
+}
@@ -0,0 +1,174 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/**
+ * The recognition pipeline for one signer: features, classifier, decoder and autocomplete.
+ *
+ * <p>{@link #process} runs all stages for one frame. Callers that batch classification across
+ * sessions instead call {@link #extract}, classify the features themselves, and then {@link
+ * #decode}. A session is not thread-safe; frames of one session must be fed in order.
+ */
+public final class RecognitionSession {
+  /** Number of suggested words, one per autocomplete button. */
+  public static final int MAX_COMPLETIONS = 6;
+
+  static final int DEFAULT_HOLD_FRAMES = 5;
+  static final float DEFAULT_MIN_CONFIDENCE = 0.5f;
+
+  /** Outcome of one frame. Reused between frames; copy what needs to outlive the next call. */
+  public static final class Frame {
+    /** Best letter of this frame, or -1 if no hand was seen. */
+    public int letter = -1;
+    public float confidence;
+    /** Letter committed by this frame, or -1. */
+    public int committed = -1;
+    /** Completions for the committed letters; only refreshed when a letter is committed. */
+    public final String[] completions = new String[MAX_COMPLETIONS];
+    public int numCompletions;
+    public final float[] probabilities = new float[Jamo.COUNT];
+  }
+
+  private final Classifier classifier;
+  private final Autocomplete autocomplete;
+  private AngleKernel angleKernel = new AngleKernel(AngleKernel.Accuracy.EXACT);
+  private final LetterDecoder decoder;
+  private final float[] features = new float[AngleFeatures.SIZE];
+  private final Frame frame = new Frame();
+  private volatile JamoLanguageModel languageModel;
+  private volatile float languageModelWeight;
+
+  /**
+   * @param classifier used by {@link #process}; may be null if the caller only uses {@link
+   *     #extract} and {@link #decode}.
+   * @param autocomplete may be null to skip word suggestions.
+   */
+  public RecognitionSession(Classifier classifier, Autocomplete autocomplete) {
+    this(classifier, autocomplete, new LetterDecoder(DEFAULT_HOLD_FRAMES, DEFAULT_MIN_CONFIDENCE));
+  }
+
+  public RecognitionSession(
+      Classifier classifier, Autocomplete autocomplete, LetterDecoder decoder) {
+    this.classifier = classifier;
+    this.autocomplete = autocomplete;
+    this.decoder = decoder;
+  }
+
+  /**
+   * Runs the whole pipeline on one frame.
+   *
+   * @param landmarks {@link AngleFeatures#LANDMARK_SIZE} values per hand; only the first hand is
+   *     used.
+   */
+  public Frame process(float[] landmarks, int numHands) {
+    if (!extract(landmarks, numHands, features, 0)) {
+      return decode(null, 0);
+    }
+    classifier.classify(features, 1, frame.probabilities);
+    return decode(frame.probabilities, 0);
+  }
+
+  /**
+   * Computes the classifier input for one frame.
+   *
+   * @return false if the frame has no hand, in which case nothing is written and the frame must
+   *     still be passed to {@link #decode} with null probabilities.
+   */
+  public boolean extract(float[] landmarks, int numHands, float[] out, int outOffset) {
+    if (numHands <= 0) {
+      return false;
+    }
+    angleKernel.compute(landmarks, 0, out, outOffset);
+    return true;
+  }
+
+  /** Decodes classifier output for the frame last passed to {@link #extract}. */
+  public Frame decode(float[] probabilities, int offset) {
+    frame.committed = -1;
+    if (probabilities == null) {
+      frame.letter = -1;
+      frame.confidence = 0f;
+      decoder.noHand();
+      return frame;
+    }
+    if (probabilities != frame.probabilities || offset != 0) {
+      System.arraycopy(probabilities, offset, frame.probabilities, 0, Jamo.COUNT);
+    }
+    JamoLanguageModel model = languageModel;
+    if (model != null) {
+      model.rerank(
+          decoder.letters(), decoder.length(), frame.probabilities, 0, languageModelWeight);
+    }
+    int best = 0;
+    for (int i = 1; i < Jamo.COUNT; i++) {
+      if (frame.probabilities[i] > frame.probabilities[best]) {
+        best = i;
+      }
+    }
+    frame.letter = best;
+    frame.confidence = frame.probabilities[best];
+    frame.committed = decoder.accept(best, frame.confidence);
+    if (frame.committed >= 0) {
+      refreshCompletions();
+    }
+    return frame;
+  }
+
+  /**
+   * Reranks classifier output with a prior over the letters committed so far: each letter's score
+   * is multiplied by {@code P(letter | history)^weight}. Pass null to turn it off.
+   *
+   * <p>The model was trained on isolated words, so the caller should {@link LetterDecoder#clear}
+   * the {@link #decoder} whenever a word is finished or a space is entered; otherwise the letters
+   * of the last word become the context of the next one.
+   */
+  public void setLanguageModel(JamoLanguageModel model, float weight) {
+    languageModelWeight = weight;
+    languageModel = model;
+  }
+
+  /**
+   * Sets how closely feature extraction follows {@link AngleFeatures}; see {@link
+   * AngleKernel.Accuracy}. Call it on the thread that processes frames.
+   */
+  public void setFeatureAccuracy(AngleKernel.Accuracy accuracy) {
+    if (accuracy != angleKernel.accuracy()) {
+      angleKernel = new AngleKernel(accuracy);
+    }
+  }
+
+  /** Classifier input of the last frame passed to {@link #process} that had a hand. */
+  public float[] features() {
+    return features;
+  }
+
+  /** The letters committed so far. */
+  public LetterDecoder decoder() {
+    return decoder;
+  }
+
+  /**
+   * Recomputes {@link Frame#completions} after the committed letters changed outside a frame.
+   * Returns the frame, whose other fields are left as they were. Without committed letters there
+   * are no completions; every word would match the empty prefix.
+   */
+  public Frame refreshCompletions() {
+    frame.numCompletions =
+        autocomplete == null || decoder.length() == 0
+            ? 0
+            : autocomplete.complete(decoder.letters(), decoder.length(), frame.completions);
+    return frame;
+  }
+}
@@ -0,0 +1,172 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Feature vectors recorded on a device, for offline evaluation.
+ *
+ * <p>CSV with one frame per line: {@code label,model,f0,...,f15}, optionally followed by the
+ * model's {@link Jamo#COUNT} probabilities {@code p0,...,p30}. {@code label} is the letter the
+ * signer meant and {@code model} what the TFLite model answered; either may be a jamo, a letter
+ * index, or -1 when unknown. Frames without probabilities get probability 1 for the model's answer.
+ *
+ * <p>Frames are in the order they were signed. A line starting with {@value #RECORDING_MARKER}
+ * begins a new recording, i.e. one continuous take; other lines starting with {@code #} are
+ * comments.
+ */
+public final class RecordedFrames {
+  public static final String RECORDING_MARKER = "# recording";
+
+  public final float[] features;
+  public final int[] labels;
+  public final int[] modelLabels;
+  /** {@link Jamo#COUNT} model probabilities per frame. */
+  public final float[] modelProbabilities;
+  /** Index of the recording each frame belongs to, counting from 0. */
+  public final int[] recordings;
+  public final int numRecordings;
+  public final int count;
+
+  private RecordedFrames(
+      float[] features,
+      int[] labels,
+      int[] modelLabels,
+      float[] modelProbabilities,
+      int[] recordings,
+      int count) {
+    this.features = features;
+    this.labels = labels;
+    this.modelLabels = modelLabels;
+    this.modelProbabilities = modelProbabilities;
+    this.recordings = recordings;
+    this.numRecordings = count == 0 ? 0 : recordings[count - 1] + 1;
+    this.count = count;
+  }
+
+  public static RecordedFrames read(InputStream in) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    float[] features = new float[1024 * AngleFeatures.SIZE];
+    int[] labels = new int[1024];
+    int[] modelLabels = new int[1024];
+    float[] modelProbabilities = new float[1024 * Jamo.COUNT];
+    int[] recordings = new int[1024];
+    int count = 0;
+    int recording = 0;
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      lineNumber++;
+      line = line.trim();
+      if (line.startsWith(RECORDING_MARKER)) {
+        // The frames before the first marker, if any, form recording 0.
+        if (count > 0 && recordings[count - 1] == recording) {
+          recording++;
+        }
+        continue;
+      }
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      String[] fields = line.split(",");
+      int probabilitiesField = 2 + AngleFeatures.SIZE;
+      boolean hasProbabilities = fields.length == probabilitiesField + Jamo.COUNT;
+      if (fields.length != probabilitiesField && !hasProbabilities) {
+        throw new IOException("Line " + lineNumber + ": expected " + probabilitiesField + " or "
+            + (probabilitiesField + Jamo.COUNT) + " fields, got " + fields.length);
+      }
+      if (count == labels.length) {
+        labels = Arrays.copyOf(labels, count * 2);
+        modelLabels = Arrays.copyOf(modelLabels, count * 2);
+        features = Arrays.copyOf(features, count * 2 * AngleFeatures.SIZE);
+        modelProbabilities = Arrays.copyOf(modelProbabilities, count * 2 * Jamo.COUNT);
+        recordings = Arrays.copyOf(recordings, count * 2);
+      }
+      try {
+        labels[count] = parseLabel(fields[0]);
+        modelLabels[count] = parseLabel(fields[1]);
+        for (int j = 0; j < AngleFeatures.SIZE; j++) {
+          features[count * AngleFeatures.SIZE + j] = Float.parseFloat(fields[2 + j]);
+        }
+        for (int c = 0; c < Jamo.COUNT; c++) {
+          modelProbabilities[count * Jamo.COUNT + c] =
+              hasProbabilities
+                  ? Float.parseFloat(fields[probabilitiesField + c])
+                  : c == modelLabels[count] ? 1f : 0f;
+        }
+      } catch (NumberFormatException e) {
+        throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+      }
+      recordings[count] = recording;
+      count++;
+    }
+    return new RecordedFrames(
+        features, labels, modelLabels, modelProbabilities, recordings, count);
+  }
+
+  /** Starts a new recording in the format read by {@link #read}. */
+  public static void writeRecordingStart(Writer out, String name) throws IOException {
+    out.write(RECORDING_MARKER + " " + name + "\n");
+  }
+
+  /**
+   * Appends one frame in the format read by {@link #read}.
+   *
+   * @param modelProbabilities the model's output at {@code probabilitiesOffset}, or null.
+   */
+  public static void write(
+      Writer out,
+      int label,
+      int modelLabel,
+      float[] features,
+      int offset,
+      float[] modelProbabilities,
+      int probabilitiesOffset)
+      throws IOException {
+    StringBuilder line = new StringBuilder();
+    line.append(label).append(',').append(modelLabel);
+    for (int j = 0; j < AngleFeatures.SIZE; j++) {
+      line.append(',').append(features[offset + j]);
+    }
+    if (modelProbabilities != null) {
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        line.append(',').append(modelProbabilities[probabilitiesOffset + c]);
+      }
+    }
+    out.write(line.append('\n').toString());
+  }
+
+  private static int parseLabel(String field) {
+    field = field.trim();
+    if (field.isEmpty()) {
+      return -1;
+    }
+    if (field.length() == 1 && Jamo.indexOf(field.charAt(0)) >= 0) {
+      return Jamo.indexOf(field.charAt(0));
+    }
+    int label = Integer.parseInt(field);
+    if (label < -1 || label >= Jamo.COUNT) {
+      throw new NumberFormatException("Label out of range: " + label);
+    }
+    return label;
+  }
+}
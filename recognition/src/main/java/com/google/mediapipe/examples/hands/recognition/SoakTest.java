@@ -0,0 +1,472 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the recognition pipeline with {@link SyntheticHandPoses} for a long time and checks that
+ * it stays healthy: the heap must not keep growing, sessions and threads must be released, and
+ * latency must not drift upwards.
+ *
+ * <p>Each simulated user spells random letter sequences at a fixed frame rate, holding every letter
+ * for a few frames, with a short gap without hands between words. By default every user runs its
+ * own {@link RecognitionSession} in-process, classified by a {@link NearestCentroidClassifier}
+ * fitted on generated poses. With {@code --server} the users go through an in-process {@link
+ * RecognitionServer} and {@link RecognitionClient}s that reconnect every {@code --reconnect-frames}
+ * frames, so session setup and teardown are soaked too; with {@code --port} they go through a
+ * server that is already running.
+ *
+ * <p>Every report interval the tool prints throughput, latency over the interval, accuracy, the
+ * heap in use after a GC request, live threads and connected sessions. Intervals within the warm-up
+ * are not judged. At the end it exits with status 1 if a straight line fitted to the heap samples
+ * rises by more than {@code --max-heap-growth-mb} over the run, if the p99 latency of the last
+ * intervals is more than {@code --max-latency-drift} times that of the first, if the thread count
+ * grew by more than the number of users, or if sessions are left open after all users closed.
+ *
+ * <pre>
+ * --duration-s=N          default 3600
+ * --fps=N                 frames per second per user, 0 to run flat out; default 30
+ * --users=N               default 4
+ * --hold-frames=N         frames per letter, default 8
+ * --report-s=N            default 10
+ * --warm-up-s=N           default 30
+ * --server                go through an in-process server
+ * --port=N                go through the server listening on this port instead
+ * --reconnect-frames=N    frames per connection, default 10000; 0 never reconnects
+ * --words=FILE            completions, text or .lex, as for {@link RecognitionServer}
+ * --confusion=FILE        confusion counts for .lex completions
+ * --lm=FILE               jamo language model, weight 0.5
+ * --jitter=X              landmark noise in palm lengths, default 0.02
+ * --missing-rate=X        frames without a hand, default 0.02
+ * --second-hand-rate=X    frames with a second hand, default 0.05
+ * --seed=N                default 1
+ * --max-heap-growth-mb=X  default 16
+ * --max-latency-drift=X   default 2
+ * </pre>
+ */
+public final class SoakTest {
+  private static final int TRAINING_FRAMES_PER_LETTER = 200;
+  private static final int MAX_WORD_LETTERS = 6;
+  private static final int WORD_GAP_FRAMES = 5;
+  // Intervals averaged at each end of the run when comparing latency.
+  private static final int DRIFT_INTERVALS = 3;
+  // Smaller p99 increases are timer noise, not drift.
+  private static final double MIN_DRIFT_MILLIS = 0.1;
+  private static final long SESSION_CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private static volatile boolean running = true;
+
+  private SoakTest() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = RecognitionServer.parseOptions(args);
+    long durationNanos =
+        TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("duration-s", "3600")));
+    long reportNanos =
+        TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("report-s", "10")));
+    long warmUpNanos =
+        TimeUnit.SECONDS.toNanos(Long.parseLong(options.getOrDefault("warm-up-s", "30")));
+    int fps = Integer.parseInt(options.getOrDefault("fps", "30"));
+    int numUsers = Integer.parseInt(options.getOrDefault("users", "4"));
+    int holdFrames = Integer.parseInt(options.getOrDefault("hold-frames", "8"));
+    int reconnectFrames = Integer.parseInt(options.getOrDefault("reconnect-frames", "10000"));
+    long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+    double maxHeapGrowthMb = Double.parseDouble(options.getOrDefault("max-heap-growth-mb", "16"));
+    double maxLatencyDrift = Double.parseDouble(options.getOrDefault("max-latency-drift", "2"));
+
+    Autocomplete autocomplete =
+        RecognitionServer.readAutocomplete(options.get("words"), options.get("confusion"));
+    JamoLanguageModel languageModel = null;
+    if (options.containsKey("lm")) {
+      try (InputStream in = new BufferedInputStream(new FileInputStream(options.get("lm")))) {
+        languageModel = JamoLanguageModel.read(in);
+      }
+    }
+    NearestCentroidClassifier classifier = train(seed);
+
+    RecognitionServer server = null;
+    int port = Integer.parseInt(options.getOrDefault("port", "-1"));
+    if (port < 0 && options.containsKey("server")) {
+      Classifier[] workers = new Classifier[Runtime.getRuntime().availableProcessors()];
+      for (int i = 0; i < workers.length; i++) {
+        workers[i] = classifier.copy();
+      }
+      MicroBatcher batcher =
+          new MicroBatcher(workers, 32, TimeUnit.MICROSECONDS.toNanos(2000), 4096);
+      server = new RecognitionServer(0, batcher, autocomplete, 0);
+      server.setLanguageModel(languageModel, 0.5f);
+      port = server.port();
+    }
+
+    User[] users = new User[numUsers];
+    for (int i = 0; i < numUsers; i++) {
+      SyntheticHandPoses poses =
+          new SyntheticHandPoses(seed + 1 + i)
+              .setJitter(Float.parseFloat(options.getOrDefault("jitter", "0.02")))
+              .setMissingHandRate(Float.parseFloat(options.getOrDefault("missing-rate", "0.02")))
+              .setSecondHandRate(
+                  Float.parseFloat(options.getOrDefault("second-hand-rate", "0.05")));
+      if (port < 0) {
+        RecognitionSession session = new RecognitionSession(classifier.copy(), autocomplete);
+        session.setLanguageModel(languageModel, 0.5f);
+        users[i] = new LocalUser(i, poses, fps, holdFrames, session);
+      } else {
+        users[i] = new RemoteUser(i, poses, fps, holdFrames, port, reconnectFrames);
+      }
+    }
+    System.out.printf(
+        "%d %s users at %s for %d s%n",
+        numUsers,
+        server != null ? "in-process server" : port >= 0 ? "remote server" : "in-process",
+        fps > 0 ? fps + " frames/s" : "full speed",
+        TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+    for (User user : users) {
+      user.start();
+    }
+
+    List<Sample> samples = new ArrayList<>();
+    LatencyHistogram interval = new LatencyHistogram();
+    LatencyHistogram total = new LatencyHistogram();
+    long start = System.nanoTime();
+    long lastReport = start;
+    long lastFrames = 0;
+    long lastHands = 0;
+    long lastCorrect = 0;
+    boolean failed = false;
+    while (!failed && lastReport - start < durationNanos) {
+      long wake = Math.min(lastReport + reportNanos, start + durationNanos);
+      TimeUnit.NANOSECONDS.sleep(wake - System.nanoTime());
+      long now = System.nanoTime();
+      interval.reset();
+      long frames = 0;
+      long hands = 0;
+      long correct = 0;
+      for (User user : users) {
+        synchronized (user.latency) {
+          interval.add(user.latency);
+          user.latency.reset();
+        }
+        frames += user.frames.get();
+        hands += user.hands.get();
+        correct += user.correct.get();
+        failed |= user.error != null;
+      }
+      total.add(interval);
+      Sample sample = new Sample();
+      sample.seconds = (now - start) / 1e9;
+      sample.p99Millis = interval.percentileMillis(99);
+      sample.heapMb = usedHeapMb();
+      sample.threads = Thread.activeCount();
+      System.out.printf(
+          "%6.0fs %8.1f frames/s  %s  accuracy=%.3f heap=%.1fMB threads=%d%s%s%n",
+          sample.seconds,
+          (frames - lastFrames) / ((now - lastReport) / 1e9),
+          interval,
+          hands == lastHands ? 0.0 : (double) (correct - lastCorrect) / (hands - lastHands),
+          sample.heapMb,
+          sample.threads,
+          server == null ? "" : " sessions=" + server.sessions(),
+          now - start < warmUpNanos ? " (warm-up)" : "");
+      if (now - start >= warmUpNanos) {
+        samples.add(sample);
+      }
+      lastReport = now;
+      lastFrames = frames;
+      lastHands = hands;
+      lastCorrect = correct;
+    }
+
+    running = false;
+    for (User user : users) {
+      user.join();
+      if (user.error != null) {
+        System.out.println("FAIL: user " + user.id + ": " + user.error);
+        failed = true;
+      }
+    }
+    if (server != null) {
+      long deadline = System.currentTimeMillis() + SESSION_CLOSE_TIMEOUT_MILLIS;
+      while (server.sessions() > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      if (server.sessions() > 0) {
+        System.out.println("FAIL: " + server.sessions() + " sessions still open after all closed");
+        failed = true;
+      }
+      server.close();
+    }
+    System.out.println("total: " + total);
+    failed |= !judge(samples, numUsers, maxHeapGrowthMb, maxLatencyDrift);
+    System.exit(failed ? 1 : 0);
+  }
+
+  /** Fits the classifier every user runs on noisy poses of each letter. */
+  private static NearestCentroidClassifier train(long seed) {
+    SyntheticHandPoses poses = new SyntheticHandPoses(seed);
+    AngleFeatures angleFeatures = new AngleFeatures();
+    int count = TRAINING_FRAMES_PER_LETTER * Jamo.COUNT;
+    float[] features = new float[count * AngleFeatures.SIZE];
+    int[] labels = new int[count];
+    float[] landmarks = new float[RecognitionClient.MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+    for (int i = 0; i < count; i++) {
+      labels[i] = i % Jamo.COUNT;
+      poses.next(labels[i], landmarks);
+      angleFeatures.compute(landmarks, 0, features, i * AngleFeatures.SIZE);
+    }
+    return NearestCentroidClassifier.train(features, labels, count);
+  }
+
+  /** Checks the samples after warm-up for heap growth, latency drift and thread leaks. */
+  private static boolean judge(
+      List<Sample> samples, int numUsers, double maxHeapGrowthMb, double maxLatencyDrift) {
+    if (samples.size() < 2) {
+      System.out.println("Too few samples after warm-up to judge growth or drift");
+      return true;
+    }
+    boolean passed = true;
+    // Least-squares slope of heap over time, projected over the judged part of the run.
+    double meanT = 0;
+    double meanHeap = 0;
+    for (Sample sample : samples) {
+      meanT += sample.seconds;
+      meanHeap += sample.heapMb;
+    }
+    meanT /= samples.size();
+    meanHeap /= samples.size();
+    double covariance = 0;
+    double variance = 0;
+    for (Sample sample : samples) {
+      covariance += (sample.seconds - meanT) * (sample.heapMb - meanHeap);
+      variance += (sample.seconds - meanT) * (sample.seconds - meanT);
+    }
+    Sample first = samples.get(0);
+    Sample last = samples.get(samples.size() - 1);
+    double growth = covariance / variance * (last.seconds - first.seconds);
+    System.out.printf(
+        "heap: %.1fMB -> %.1fMB, trend %+.2fMB over %.0fs%n",
+        first.heapMb, last.heapMb, growth, last.seconds - first.seconds);
+    if (growth > maxHeapGrowthMb) {
+      System.out.printf("FAIL: heap trend exceeds %.1fMB%n", maxHeapGrowthMb);
+      passed = false;
+    }
+
+    int n = Math.min(DRIFT_INTERVALS, samples.size() / 2);
+    double[] early = new double[n];
+    double[] late = new double[n];
+    for (int i = 0; i < n; i++) {
+      early[i] = samples.get(i).p99Millis;
+      late[i] = samples.get(samples.size() - n + i).p99Millis;
+    }
+    double earlyP99 = median(early);
+    double lateP99 = median(late);
+    System.out.printf("p99: %.3fms -> %.3fms%n", earlyP99, lateP99);
+    if (lateP99 > earlyP99 * maxLatencyDrift && lateP99 - earlyP99 > MIN_DRIFT_MILLIS) {
+      System.out.printf("FAIL: p99 latency drifted by more than %.1fx%n", maxLatencyDrift);
+      passed = false;
+    }
+
+    System.out.printf("threads: %d -> %d%n", first.threads, last.threads);
+    if (last.threads - first.threads > numUsers) {
+      System.out.println("FAIL: thread count keeps growing");
+      passed = false;
+    }
+    System.out.println(passed ? "PASS" : "FAIL");
+    return passed;
+  }
+
+  private static double usedHeapMb() {
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    return (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0);
+  }
+
+  private static double median(double[] values) {
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+
+  /** One report interval after warm-up. */
+  private static final class Sample {
+    double seconds;
+    double p99Millis;
+    double heapMb;
+    int threads;
+  }
+
+  /** One simulated signer, on its own thread. */
+  private abstract static class User extends Thread {
+    final int id;
+    final LatencyHistogram latency = new LatencyHistogram();
+    final AtomicLong frames = new AtomicLong();
+    final AtomicLong hands = new AtomicLong();
+    final AtomicLong correct = new AtomicLong();
+    volatile Exception error;
+    private final SyntheticHandPoses poses;
+    private final long periodNanos;
+    private final int holdFrames;
+    private final Random random;
+    private final float[] landmarks =
+        new float[RecognitionClient.MAX_HANDS * AngleFeatures.LANDMARK_SIZE];
+
+    User(int id, SyntheticHandPoses poses, int fps, int holdFrames) {
+      super("soak-user-" + id);
+      this.id = id;
+      this.poses = poses;
+      this.periodNanos = fps > 0 ? TimeUnit.SECONDS.toNanos(1) / fps : 0;
+      this.holdFrames = holdFrames;
+      this.random = new Random(id);
+    }
+
+    abstract RecognitionSession.Frame recognize(float[] landmarks, int numHands)
+        throws IOException;
+
+    /** Called in the gap between two words. */
+    abstract void endWord();
+
+    abstract void close() throws IOException;
+
+    @Override
+    public void run() {
+      int letter = -1;
+      int remaining = 0;
+      int lettersLeft = 0;
+      long next = System.nanoTime();
+      try {
+        while (running) {
+          if (remaining == 0) {
+            if (lettersLeft == 0) {
+              letter = -1;
+              remaining = WORD_GAP_FRAMES;
+              lettersLeft = 1 + random.nextInt(MAX_WORD_LETTERS);
+              endWord();
+            } else {
+              letter = random.nextInt(Jamo.COUNT);
+              remaining = holdFrames;
+              lettersLeft--;
+            }
+          }
+          remaining--;
+          int numHands = letter < 0 ? 0 : poses.next(letter, landmarks);
+          long start = System.nanoTime();
+          RecognitionSession.Frame frame = recognize(landmarks, numHands);
+          latency.record(System.nanoTime() - start);
+          frames.incrementAndGet();
+          if (numHands > 0) {
+            hands.incrementAndGet();
+            if (frame.letter == letter) {
+              correct.incrementAndGet();
+            }
+          }
+          if (periodNanos > 0) {
+            next += periodNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+              LockSupport.parkNanos(wait);
+            } else if (wait < -periodNanos) {
+              // Fell more than a frame behind: drop the backlog instead of bursting.
+              next = System.nanoTime();
+            }
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        error = e;
+      } finally {
+        try {
+          close();
+        } catch (IOException e) {
+          if (error == null) {
+            error = e;
+          }
+        }
+      }
+    }
+  }
+
+  /** Runs its own session in this process. */
+  private static final class LocalUser extends User {
+    private final RecognitionSession session;
+
+    LocalUser(
+        int id, SyntheticHandPoses poses, int fps, int holdFrames, RecognitionSession session) {
+      super(id, poses, fps, holdFrames);
+      this.session = session;
+    }
+
+    @Override
+    RecognitionSession.Frame recognize(float[] landmarks, int numHands) {
+      return session.process(landmarks, numHands);
+    }
+
+    @Override
+    void endWord() {
+      session.decoder().clear();
+    }
+
+    @Override
+    void close() {}
+  }
+
+  /**
+   * Talks to a server, reconnecting every so often. A server session cannot be cleared, so its
+   * decoder keeps the most recent letters across words.
+   */
+  private static final class RemoteUser extends User {
+    private final int port;
+    private final int reconnectFrames;
+    private RecognitionClient client;
+    private int connectionFrames;
+
+    RemoteUser(
+        int id, SyntheticHandPoses poses, int fps, int holdFrames, int port, int reconnectFrames)
+        throws IOException {
+      super(id, poses, fps, holdFrames);
+      this.port = port;
+      this.reconnectFrames = reconnectFrames;
+      this.client = new RecognitionClient(port);
+    }
+
+    @Override
+    RecognitionSession.Frame recognize(float[] landmarks, int numHands) throws IOException {
+      if (reconnectFrames > 0 && connectionFrames == reconnectFrames) {
+        client.close();
+        client = new RecognitionClient(port);
+        connectionFrames = 0;
+      }
+      connectionFrames++;
+      return client.recognize(landmarks, numHands);
+    }
+
+    @Override
+    void endWord() {}
+
+    @Override
+    void close() throws IOException {
+      client.close();
+    }
+  }
+}
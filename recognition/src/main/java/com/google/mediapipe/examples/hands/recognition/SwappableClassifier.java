@@ -0,0 +1,189 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A classifier whose model can be replaced while frames keep flowing.
+ *
+ * <p>{@link #offer} and {@link #rollback} may be called from any thread, but only queue the
+ * change: it takes effect at the start of the next {@link #classify} call, on the classifying
+ * thread, so a call never sees two models and no frame is dropped. The model that was replaced is
+ * kept for {@link #rollback}; the one before it is closed if it is {@link AutoCloseable}, as is a
+ * model that was rolled back. Like the classifiers it wraps, classification itself is
+ * single-threaded.
+ *
+ * <p>{@link #close} closes every model held, and any model offered after it; it must not race with
+ * {@link #classify}.
+ */
+public final class SwappableClassifier implements Classifier, AutoCloseable {
+  private static final Logger logger = Logger.getLogger(SwappableClassifier.class.getName());
+
+  private Classifier current;
+  private String version;
+  private Classifier previous;
+  private String previousVersion;
+  private Classifier pending;
+  private String pendingVersion;
+  private boolean rollbackRequested;
+  private boolean closed;
+  private volatile boolean changeRequested;
+  private volatile long frames;
+  private volatile int swaps;
+
+  public SwappableClassifier(Classifier initial, String version) {
+    this.current = initial;
+    this.version = version;
+  }
+
+  /** Queues {@code next} to replace the current model from the next frame on. */
+  public synchronized void offer(Classifier next, String nextVersion) {
+    if (closed) {
+      // A loader finishing after close() would otherwise leak its model.
+      close(next, nextVersion);
+      return;
+    }
+    if (pending != null) {
+      close(pending, pendingVersion);
+    }
+    pending = next;
+    pendingVersion = nextVersion;
+    changeRequested = true;
+  }
+
+  /**
+   * Drops the model offered last if it has not been swapped in yet, or otherwise queues a switch
+   * back to the model that was replaced last. The dropped model is closed and can not be rolled
+   * back to.
+   *
+   * @return the version of the dropped model, or null if there is neither a pending nor an earlier
+   *     model.
+   */
+  public synchronized String rollback() {
+    if (pending != null) {
+      String dropped = pendingVersion;
+      close(pending, pendingVersion);
+      pending = null;
+      pendingVersion = null;
+      return dropped;
+    }
+    if (previous == null || rollbackRequested) {
+      return null;
+    }
+    rollbackRequested = true;
+    changeRequested = true;
+    return version;
+  }
+
+  @Override
+  public void classify(float[] features, int count, float[] probabilities) {
+    if (changeRequested) {
+      applyChange();
+    }
+    current.classify(features, count, probabilities);
+    frames += count;
+  }
+
+  /** Version of the model classifying now. */
+  public synchronized String version() {
+    return version;
+  }
+
+  /** Vectors classified by the current model since it was swapped in. */
+  public long frames() {
+    return frames;
+  }
+
+  /** Number of times the model has been replaced. */
+  public int swaps() {
+    return swaps;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "model %s: %d frames, %d swaps%s",
+        version, frames, swaps, previous == null ? "" : ", rollback to " + previousVersion);
+  }
+
+  /** Closes the current model, the one kept for rollback and a pending one. */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    changeRequested = false;
+    rollbackRequested = false;
+    if (pending != null) {
+      close(pending, pendingVersion);
+      pending = null;
+      pendingVersion = null;
+    }
+    if (previous != null) {
+      close(previous, previousVersion);
+      previous = null;
+      previousVersion = null;
+    }
+    close(current, version);
+  }
+
+  /** Applies a queued rollback, then a pending model offered after it. */
+  private synchronized void applyChange() {
+    changeRequested = false;
+    if (rollbackRequested) {
+      rollbackRequested = false;
+      logger.info(
+          String.format(
+              "Rolling back model %s to %s after %d frames", version, previousVersion, frames));
+      close(current, version);
+      current = previous;
+      version = previousVersion;
+      previous = null;
+      previousVersion = null;
+      frames = 0;
+      swaps++;
+    }
+    if (pending != null) {
+      logger.info(
+          String.format(
+              "Swapping model %s for %s after %d frames", version, pendingVersion, frames));
+      if (previous != null) {
+        close(previous, previousVersion);
+      }
+      previous = current;
+      previousVersion = version;
+      current = pending;
+      version = pendingVersion;
+      pending = null;
+      pendingVersion = null;
+      frames = 0;
+      swaps++;
+    }
+  }
+
+  private static void close(Classifier classifier, String version) {
+    if (!(classifier instanceof AutoCloseable)) {
+      return;
+    }
+    try {
+      ((AutoCloseable) classifier).close();
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Closing model " + version, e);
+    }
+  }
+}
@@ -0,0 +1,250 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.util.Random;
+
+/**
+ * Generates 21-landmark hand poses for each letter, laid out like the landmarks the app copies out
+ * of a {@code HandsResult}: interleaved {@code x, y, z} per landmark, x and y normalized to the
+ * image, z relative to the wrist on the same scale as x.
+ *
+ * <p>Each letter gets its own fixed pose: a curl of each of the five fingers and a palm roll,
+ * derived from the letter index so that no two letters share a pose. The poses are meant to be told
+ * apart by a classifier, not to look like the real signs. Every generated frame then rotates,
+ * scales and moves the hand at random and adds Gaussian jitter to every landmark. Optionally the
+ * hand goes missing, or a mirrored second hand with some other pose shows up next to it.
+ *
+ * <p>Deterministic for a given seed. Not thread-safe; use one instance per thread.
+ */
+public final class SyntheticHandPoses {
+  // Palm-length units, palm facing the camera, fingers along +y; curling bends towards -z.
+  // Base joint of each finger, thumb first: landmarks 1, 5, 9, 13 and 17.
+  private static final float[][] BASES = {
+    {0.20f, 0.22f, 0f},
+    {0.22f, 0.90f, 0f},
+    {0f, 0.95f, 0f},
+    {-0.18f, 0.88f, 0f},
+    {-0.33f, 0.78f, 0f}
+  };
+  private static final float[][] SEGMENTS = {
+    {0.32f, 0.26f, 0.22f},
+    {0.45f, 0.27f, 0.22f},
+    {0.50f, 0.30f, 0.24f},
+    {0.46f, 0.28f, 0.22f},
+    {0.36f, 0.22f, 0.20f}
+  };
+  // Direction of each straight finger, in radians from +y towards +x.
+  private static final float[] SPLAY = {0.85f, 0.10f, 0f, -0.12f, -0.26f};
+  // Flexion of the three joints of each finger at full curl, in radians.
+  private static final float[][] FLEXION = {
+    {0.5f, 0.7f, 0.9f},
+    {1.4f, 1.7f, 1.1f},
+    {1.4f, 1.7f, 1.1f},
+    {1.4f, 1.7f, 1.1f},
+    {1.4f, 1.7f, 1.1f}
+  };
+  private static final int CURL_LEVELS = 3;
+  private static final int ROLL_LEVELS = 4;
+  private static final float ROLL_STEP = (float) Math.toRadians(40);
+
+  private final Random random;
+  private final float[] curls = new float[SEGMENTS.length];
+  private final float[] hand = new float[AngleFeatures.LANDMARK_SIZE];
+  private float jitter = 0.02f;
+  private float maxRotation = (float) Math.toRadians(15);
+  private float minScale = 0.25f;
+  private float maxScale = 0.45f;
+  private float missingHandRate;
+  private float secondHandRate;
+
+  public SyntheticHandPoses(long seed) {
+    random = new Random(seed);
+  }
+
+  /** Standard deviation of the per-landmark noise, in palm lengths. Default 0.02. */
+  public SyntheticHandPoses setJitter(float jitter) {
+    this.jitter = jitter;
+    return this;
+  }
+
+  /** Largest random rotation about each axis, in degrees. Default 15. */
+  public SyntheticHandPoses setMaxRotation(float degrees) {
+    this.maxRotation = (float) Math.toRadians(degrees);
+    return this;
+  }
+
+  /** Range of the palm length, as a fraction of the image. Default 0.25 to 0.45. */
+  public SyntheticHandPoses setScale(float min, float max) {
+    if (min <= 0f || max < min) {
+      throw new IllegalArgumentException("Bad scale range: " + min + ", " + max);
+    }
+    this.minScale = min;
+    this.maxScale = max;
+    return this;
+  }
+
+  /** Fraction of frames without any hand. Default 0. */
+  public SyntheticHandPoses setMissingHandRate(float rate) {
+    this.missingHandRate = rate;
+    return this;
+  }
+
+  /** Fraction of frames with a second hand after the signing one. Default 0. */
+  public SyntheticHandPoses setSecondHandRate(float rate) {
+    this.secondHandRate = rate;
+    return this;
+  }
+
+  /**
+   * Generates one frame of {@code letter} being signed.
+   *
+   * @param landmarks receives {@link AngleFeatures#LANDMARK_SIZE} values per hand; must have room
+   *     for two hands.
+   * @return the number of hands written, 0 to 2.
+   */
+  public int next(int letter, float[] landmarks) {
+    if (random.nextFloat() < missingHandRate) {
+      return 0;
+    }
+    float x = 0.5f + 0.15f * (2 * random.nextFloat() - 1);
+    place(letter, false, x, landmarks, 0);
+    if (random.nextFloat() >= secondHandRate) {
+      return 1;
+    }
+    // The other hand, mirrored, on the other half of the image.
+    float other = x < 0.5f ? x + 0.3f : x - 0.3f;
+    place(random.nextInt(Jamo.COUNT), true, other, landmarks, AngleFeatures.LANDMARK_SIZE);
+    return 2;
+  }
+
+  /**
+   * Writes the noiseless pose of {@code letter}, upright and centered, into {@code
+   * landmarks[offset..offset + LANDMARK_SIZE)}.
+   */
+  public static void pose(int letter, float[] landmarks, int offset) {
+    float[] curls = new float[SEGMENTS.length];
+    float roll = letterPose(letter, curls);
+    float[] hand = new float[AngleFeatures.LANDMARK_SIZE];
+    skeleton(curls, hand);
+    transform(hand, roll, 0f, 0f, 0.3f, false, 0.5f, 0.8f, landmarks, offset);
+  }
+
+  private void place(int letter, boolean mirrored, float x, float[] landmarks, int offset) {
+    float roll = letterPose(letter, curls) + maxRotation * (2 * random.nextFloat() - 1);
+    float pitch = 0.5f * maxRotation * (2 * random.nextFloat() - 1);
+    float yaw = 0.5f * maxRotation * (2 * random.nextFloat() - 1);
+    float scale = minScale + (maxScale - minScale) * random.nextFloat();
+    float y = 0.75f + 0.1f * (2 * random.nextFloat() - 1);
+    skeleton(curls, hand);
+    for (int i = 0; i < hand.length; i++) {
+      hand[i] += jitter * (float) random.nextGaussian();
+    }
+    transform(hand, roll, pitch, yaw, scale, mirrored, x, y, landmarks, offset);
+  }
+
+  /**
+   * Fills in the finger curls of a letter's pose and returns its palm roll. The curls are the base
+   * 3 digits of a multiple of the letter index, which is distinct for all 31 letters.
+   */
+  private static float letterPose(int letter, float[] curls) {
+    if (letter < 0 || letter >= Jamo.COUNT) {
+      throw new IllegalArgumentException("No such letter: " + letter);
+    }
+    int code = (letter * 7 + 3) % 243;
+    for (int f = 0; f < curls.length; f++) {
+      curls[f] = (code % CURL_LEVELS) / (float) (CURL_LEVELS - 1);
+      code /= CURL_LEVELS;
+    }
+    return ROLL_STEP * ((letter * 5) % ROLL_LEVELS - 1.5f);
+  }
+
+  /** Builds the hand in palm units with the wrist at the origin. */
+  private static void skeleton(float[] curls, float[] hand) {
+    hand[0] = 0f;
+    hand[1] = 0f;
+    hand[2] = 0f;
+    for (int f = 0; f < SEGMENTS.length; f++) {
+      int joint = 4 * f + 1;
+      float sin = (float) Math.sin(SPLAY[f]);
+      float cos = (float) Math.cos(SPLAY[f]);
+      // Straight direction d and bending direction n, both unit and perpendicular. The thumb
+      // folds across the palm as well as towards the camera.
+      float dx = sin;
+      float dy = cos;
+      float nx = f == 0 ? -0.6f * cos : 0f;
+      float ny = f == 0 ? 0.6f * sin : 0f;
+      float nz = f == 0 ? -0.8f : -1f;
+      float px = BASES[f][0];
+      float py = BASES[f][1];
+      float pz = BASES[f][2];
+      put(hand, joint, px, py, pz);
+      float angle = 0f;
+      for (int s = 0; s < 3; s++) {
+        angle += curls[f] * FLEXION[f][s];
+        float a = (float) Math.cos(angle);
+        float b = (float) Math.sin(angle);
+        float length = SEGMENTS[f][s];
+        px += length * (a * dx + b * nx);
+        py += length * (a * dy + b * ny);
+        pz += length * b * nz;
+        put(hand, joint + s + 1, px, py, pz);
+      }
+    }
+  }
+
+  /**
+   * Rotates the hand about z (roll), x (pitch) and y (yaw), scales it and puts its wrist at
+   * {@code (x, y)} in image coordinates, where y points down.
+   */
+  private static void transform(
+      float[] hand,
+      float roll,
+      float pitch,
+      float yaw,
+      float scale,
+      boolean mirrored,
+      float x,
+      float y,
+      float[] landmarks,
+      int offset) {
+    float cr = (float) Math.cos(roll);
+    float sr = (float) Math.sin(roll);
+    float cp = (float) Math.cos(pitch);
+    float sp = (float) Math.sin(pitch);
+    float cy = (float) Math.cos(yaw);
+    float sy = (float) Math.sin(yaw);
+    for (int i = 0; i < AngleFeatures.NUM_LANDMARKS; i++) {
+      float hx = mirrored ? -hand[3 * i] : hand[3 * i];
+      float hy = hand[3 * i + 1];
+      float hz = hand[3 * i + 2];
+      float rx = cr * hx - sr * hy;
+      float ry = sr * hx + cr * hy;
+      float py = cp * ry - sp * hz;
+      float pz = sp * ry + cp * hz;
+      float yx = cy * rx + sy * pz;
+      float yz = -sy * rx + cy * pz;
+      landmarks[offset + 3 * i] = x + scale * yx;
+      landmarks[offset + 3 * i + 1] = y - scale * py;
+      landmarks[offset + 3 * i + 2] = scale * yz;
+    }
+  }
+
+  private static void put(float[] hand, int landmark, float x, float y, float z) {
+    hand[3 * landmark] = x;
+    hand[3 * landmark + 1] = y;
+    hand[3 * landmark + 2] = z;
+  }
+}
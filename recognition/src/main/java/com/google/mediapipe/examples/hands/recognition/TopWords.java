@@ -0,0 +1,44 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+/** Keeps the highest scoring words of a scan in small parallel arrays, best first. */
+final class TopWords {
+
+  private TopWords() {}
+
+  /**
+   * Offers the word at {@code index} to the {@code count} words already kept in {@code
+   * indices}/{@code scores}. A word that does not beat the last kept one when the arrays are full
+   * is dropped; ties keep the word offered first.
+   *
+   * @return the new number of kept words.
+   */
+  static int offer(int index, float score, int[] indices, float[] scores, int count) {
+    int capacity = indices.length;
+    if (capacity == 0 || (count == capacity && score <= scores[count - 1])) {
+      return count;
+    }
+    int i = count == capacity ? count - 1 : count;
+    while (i > 0 && scores[i - 1] < score) {
+      indices[i] = indices[i - 1];
+      scores[i] = scores[i - 1];
+      i--;
+    }
+    indices[i] = index;
+    scores[i] = score;
+    return count == capacity ? count : count + 1;
+  }
+}
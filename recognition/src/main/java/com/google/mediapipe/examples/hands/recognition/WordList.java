@@ -0,0 +1,160 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An in-memory word list sorted by spelling.
+ *
+ * <p>The text format has one word per line, optionally followed by a tab and its frequency. Lines
+ * starting with {@code #} and words that cannot be fingerspelled are skipped.
+ */
+public final class WordList implements Autocomplete {
+  /** Longest spelling accepted for a word. */
+  public static final int MAX_SPELLING = 64;
+
+  /** One word with its spelling. */
+  public static final class Entry {
+    public final String word;
+    public final byte[] spelling;
+    public final int frequency;
+
+    Entry(String word, byte[] spelling, int frequency) {
+      this.word = word;
+      this.spelling = spelling;
+      this.frequency = frequency;
+    }
+  }
+
+  private final Entry[] entries;
+
+  private WordList(Entry[] entries) {
+    this.entries = entries;
+  }
+
+  /** Reads a UTF-8 word list. Duplicate words keep the highest frequency. */
+  public static WordList read(InputStream in) throws IOException {
+    List<Entry> entries = new ArrayList<>();
+    byte[] spelling = new byte[MAX_SPELLING];
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+      int tab = line.indexOf('\t');
+      String word = tab < 0 ? line : line.substring(0, tab).trim();
+      int frequency = 1;
+      if (tab >= 0) {
+        try {
+          frequency = Integer.parseInt(line.substring(tab + 1).trim());
+        } catch (NumberFormatException e) {
+          throw new IOException("Bad frequency in word list line: " + line, e);
+        }
+      }
+      int length = Jamo.spell(word, spelling);
+      if (length <= 0) {
+        continue;
+      }
+      entries.add(new Entry(word, Arrays.copyOf(spelling, length), frequency));
+    }
+    Collections.sort(
+        entries,
+        (a, b) -> {
+          int c = compare(a.spelling, 0, a.spelling.length, b.spelling, 0, b.spelling.length);
+          return c != 0 ? c : a.word.compareTo(b.word);
+        });
+    List<Entry> unique = new ArrayList<>(entries.size());
+    for (Entry entry : entries) {
+      Entry last = unique.isEmpty() ? null : unique.get(unique.size() - 1);
+      if (last != null && last.word.equals(entry.word)) {
+        if (entry.frequency > last.frequency) {
+          unique.set(unique.size() - 1, entry);
+        }
+      } else {
+        unique.add(entry);
+      }
+    }
+    return new WordList(unique.toArray(new Entry[0]));
+  }
+
+  public int size() {
+    return entries.length;
+  }
+
+  /** Entries in spelling order. */
+  public Entry get(int index) {
+    return entries[index];
+  }
+
+  @Override
+  public int complete(byte[] letters, int length, String[] out) {
+    int lo = 0;
+    int hi = entries.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      byte[] key = entries[mid].spelling;
+      if (compare(key, 0, key.length, letters, 0, length) < 0) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    int count = 0;
+    int[] indices = new int[out.length];
+    float[] frequencies = new float[out.length];
+    for (int i = lo; i < entries.length && startsWith(entries[i].spelling, letters, length); i++) {
+      count = TopWords.offer(i, entries[i].frequency, indices, frequencies, count);
+    }
+    for (int i = 0; i < count; i++) {
+      out[i] = entries[indices[i]].word;
+    }
+    return count;
+  }
+
+  /** Lexicographic comparison of two unsigned letter sequences. */
+  static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset, int bLength) {
+    int n = Math.min(aLength, bLength);
+    for (int i = 0; i < n; i++) {
+      int c = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return aLength - bLength;
+  }
+
+  private static boolean startsWith(byte[] spelling, byte[] prefix, int length) {
+    if (spelling.length < length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (spelling[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CalibrationSessionTest {
+  private static final float[] FEATURES = new float[AngleFeatures.SIZE];
+
+  @Test
+  public void storesEveryIntervalAfterSettling() {
+    PersonalIndex index = new PersonalIndex();
+    CalibrationSession session = new CalibrationSession(index, 2, 3, 2);
+    assertEquals(0, session.currentLetter());
+    // Frames 1-3 settle, then every second frame is stored.
+    boolean[] stored = new boolean[7];
+    for (int i = 0; i < stored.length; i++) {
+      stored[i] = session.accept(FEATURES, 0);
+    }
+    assertFalse(stored[0] || stored[1] || stored[2] || stored[3]);
+    assertTrue(stored[4]);
+    assertFalse(stored[5]);
+    assertTrue(stored[6]);
+    assertEquals(2, index.count(0));
+    assertEquals(1, session.currentLetter());
+    assertEquals(0, session.samples());
+  }
+
+  @Test
+  public void skippedAndCancelledLettersKeepEarlierSamples() {
+    PersonalIndex index = new PersonalIndex();
+    index.add(FEATURES, 0, 0);
+    index.add(FEATURES, 0, 1);
+    index.add(FEATURES, 0, 2);
+    CalibrationSession session = new CalibrationSession(index, 1, 0, 1);
+
+    // Letter 0 gets a new sample, which replaces the old one.
+    assertTrue(session.accept(FEATURES, 0));
+    assertEquals(1, index.count(0));
+    assertEquals(1, session.currentLetter());
+    session.skip();
+    assertEquals(2, session.currentLetter());
+    session.cancel();
+
+    assertTrue(session.isCancelled());
+    assertEquals(-1, session.currentLetter());
+    assertFalse(session.accept(FEATURES, 0));
+    assertEquals(3, index.size());
+    assertEquals(1, index.count(1));
+    assertEquals(1, index.count(2));
+  }
+
+  @Test
+  public void finishesAfterTheLastLetter() {
+    PersonalIndex index = new PersonalIndex();
+    CalibrationSession session = new CalibrationSession(index, 1, 0, 1);
+    for (int letter = 0; letter < Jamo.COUNT; letter++) {
+      assertEquals(letter, session.currentLetter());
+      assertTrue(session.accept(FEATURES, 0));
+    }
+    assertEquals(-1, session.currentLetter());
+    assertFalse(session.isCancelled());
+    assertEquals(Jamo.COUNT, index.size());
+  }
+}
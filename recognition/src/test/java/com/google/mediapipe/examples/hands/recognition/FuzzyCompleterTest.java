@@ -0,0 +1,95 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class FuzzyCompleterTest {
+  // Two rare words that share a three-letter prefix, and many frequent one-edit neighbours.
+  private static final String WORDS =
+      "가나다\t10\n"
+          + "가나라\t10\n"
+          + "가바\t900\n"
+          + "가사\t800\n"
+          + "가자\t700\n"
+          + "가차\t600\n"
+          + "가카\t500\n"
+          + "가타\t400\n"
+          + "가파\t300\n";
+
+  @Test
+  public void exactPrefixRanksAboveOneEditMatches() throws IOException {
+    FuzzyCompleter completer = completer(WORDS);
+    for (String prefix : new String[] {"ㄱㅏㄴ", "ㄱㅏㄴㅏ"}) {
+      List<String> words = complete(completer, prefix);
+      assertEquals(prefix, Arrays.asList("가나다", "가나라"), words.subList(0, 2));
+    }
+  }
+
+  @Test
+  public void lastLetterIsNotIgnored() throws IOException {
+    FuzzyCompleter completer = completer(WORDS);
+    // The exact match first, then the one-edit neighbours by frequency.
+    assertEquals(Arrays.asList("가바", "가사", "가자"), complete(completer, "ㄱㅏㅂ").subList(0, 3));
+  }
+
+  @Test
+  public void matchesMisrecognizedLetter() throws IOException {
+    FuzzyCompleter completer = completer("가나다\t10\n다라마\t10\n");
+    assertEquals(Arrays.asList("가나다"), complete(completer, "ㄱㅏㄴㅓ"));
+  }
+
+  @Test
+  public void matchesExactlyLikeLexicon() throws IOException {
+    FuzzyCompleter completer = completer(WORDS);
+    MappedLexicon lexicon = lexicon(WORDS);
+    byte[] letters = new byte[WordList.MAX_SPELLING];
+    int length = Jamo.spell("ㄱㅏㄴㅏ", letters);
+    String[] exact = new String[6];
+    int count = lexicon.complete(letters, length, exact);
+    assertEquals(
+        Arrays.asList(exact).subList(0, count),
+        complete(completer, "ㄱㅏㄴㅏ").subList(0, count));
+  }
+
+  private static List<String> complete(FuzzyCompleter completer, String prefix) {
+    byte[] letters = new byte[WordList.MAX_SPELLING];
+    int length = Jamo.spell(prefix, letters);
+    String[] out = new String[6];
+    int count = completer.complete(letters, length, out);
+    return Arrays.asList(out).subList(0, count);
+  }
+
+  private static FuzzyCompleter completer(String words) throws IOException {
+    return new FuzzyCompleter(lexicon(words), ConfusionCosts.uniform());
+  }
+
+  private static MappedLexicon lexicon(String words) throws IOException {
+    WordList list =
+        WordList.read(new ByteArrayInputStream(words.getBytes(StandardCharsets.UTF_8)));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    MappedLexicon.write(list, out);
+    return MappedLexicon.wrap(ByteBuffer.wrap(out.toByteArray()));
+  }
+}
@@ -0,0 +1,179 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class JamoLanguageModelTest {
+  private static final String WORDS =
+      "가방\t50\n"
+          + "가족\t90\n"
+          + "가게\t10\n"
+          + "강\t70\n"
+          + "고기\t30\n"
+          + "가다\t20\n"
+          + "나무\t5\n"
+          + "나라\t40\n"
+          + "가방끈\t3\n";
+
+  private static JamoLanguageModel train(int order) throws IOException {
+    WordList words =
+        WordList.read(new ByteArrayInputStream(WORDS.getBytes(StandardCharsets.UTF_8)));
+    return JamoLanguageModel.train(words, order);
+  }
+
+  /** Histories seen in training, partly seen, and never seen. */
+  private static byte[][] histories() {
+    String[] texts = {"", "가", "가바", "가방끄", "나", "ㅎㅎ", "ㅟㅞㅙ"};
+    byte[][] histories = new byte[texts.length][];
+    for (int i = 0; i < texts.length; i++) {
+      byte[] letters = new byte[WordList.MAX_SPELLING];
+      int length = Jamo.spell(texts[i], letters);
+      histories[i] = Arrays.copyOf(letters, length);
+    }
+    return histories;
+  }
+
+  @Test
+  public void probabilitiesSumToOne() throws IOException {
+    for (int order = 1; order <= 4; order++) {
+      JamoLanguageModel model = train(order);
+      for (byte[] history : histories()) {
+        double sum = 0;
+        for (int c = 0; c < Jamo.COUNT; c++) {
+          float p = model.probability(history, history.length, c);
+          assertTrue(p > 0f);
+          sum += p;
+        }
+        assertEquals("order " + order + ", " + history.length + " letters", 1.0, sum, 1e-4);
+      }
+    }
+  }
+
+  @Test
+  public void seenContinuationIsLikelier() throws IOException {
+    JamoLanguageModel model = train(3);
+    byte[] history = histories()[1]; // 가 = ㄱ ㅏ
+    assertTrue(
+        model.probability(history, history.length, Jamo.indexOf('ㅇ'))
+            > model.probability(history, history.length, Jamo.indexOf('ㅎ')));
+  }
+
+  @Test
+  public void roundTripsJlm2() throws IOException {
+    JamoLanguageModel model = train(3);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    model.write(bytes);
+    byte[] file = bytes.toByteArray();
+    assertEquals("JLM2", new String(file, 0, 4, StandardCharsets.US_ASCII));
+
+    JamoLanguageModel read = JamoLanguageModel.read(new ByteArrayInputStream(file));
+    assertEquals(3, read.order());
+    for (byte[] history : histories()) {
+      for (int c = 0; c < Jamo.COUNT; c++) {
+        assertEquals(
+            model.probability(history, history.length, c),
+            read.probability(history, history.length, c),
+            0f);
+      }
+    }
+    ByteArrayOutputStream again = new ByteArrayOutputStream();
+    read.write(again);
+    assertTrue(Arrays.equals(file, again.toByteArray()));
+  }
+
+  @Test
+  public void rejectsOtherFilesAndOrders() throws IOException {
+    try {
+      byte[] file = "JLM1xxxxxxxx".getBytes(StandardCharsets.US_ASCII);
+      JamoLanguageModel.read(new ByteArrayInputStream(file));
+      fail();
+    } catch (IOException expected) {
+    }
+    try {
+      train(JamoLanguageModel.MAX_ORDER + 1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void tableHoldsKeysUpToHalfCapacity() {
+    LongFloatTable table = new LongFloatTable(1000);
+    // 2048 slots: the first 1024 keys fit, many of them after probing past a collision.
+    for (int i = 1; i <= 1024; i++) {
+      table.put(i * 31L, i);
+    }
+    assertEquals(1024, table.size());
+    for (int i = 1; i <= 1024; i++) {
+      assertEquals(i, table.get(i * 31L), 0f);
+    }
+    assertTrue(Float.isNaN(table.get(31L * 1025)));
+    // Overwriting does not take a slot.
+    table.put(31L, -1f);
+    assertEquals(1024, table.size());
+    assertEquals(-1f, table.get(31L), 0f);
+    try {
+      table.put(31L * 1025, 1f);
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    try {
+      table.put(0L, 1f);
+      fail();
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  @Test
+  public void tableRoundTripsAndRejectsUnsortedKeys() throws IOException {
+    LongFloatTable table = new LongFloatTable(3);
+    table.put(Long.MAX_VALUE, 1f);
+    table.put(7L, 2f);
+    table.put(-5L, 3f);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    table.write(new DataOutputStream(bytes));
+    LongFloatTable read =
+        LongFloatTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(3, read.size());
+    assertEquals(1f, read.get(Long.MAX_VALUE), 0f);
+    assertEquals(2f, read.get(7L), 0f);
+    assertEquals(3f, read.get(-5L), 0f);
+
+    ByteArrayOutputStream unsorted = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(unsorted);
+    out.writeInt(2);
+    out.writeLong(7L);
+    out.writeFloat(1f);
+    out.writeLong(3L);
+    out.writeFloat(2f);
+    try {
+      LongFloatTable.read(new DataInputStream(new ByteArrayInputStream(unsorted.toByteArray())));
+      fail();
+    } catch (IOException expected) {
+    }
+  }
+}
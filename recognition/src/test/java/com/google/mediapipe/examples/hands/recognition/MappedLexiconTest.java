@@ -0,0 +1,121 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedLexiconTest {
+  private static final String WORDS =
+      "가방\t50\n"
+          + "가족\t90\n"
+          + "가게\t10\n"
+          + "강\t70\n"
+          + "고기\t30\n"
+          + "가다\t20\n"
+          + "나무\t5\n"
+          + "나라\t40\n"
+          + "가방끈\t3\n";
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** Builds the lexicon with {@link LexiconBuilder} and maps the file it wrote. */
+  private MappedLexicon build(String words) throws Exception {
+    File text = folder.newFile("words.txt");
+    try (Writer out =
+        new OutputStreamWriter(new FileOutputStream(text), StandardCharsets.UTF_8)) {
+      out.write(words);
+    }
+    File lexicon = new File(folder.getRoot(), "lexicon/words.lex");
+    LexiconBuilder.main(new String[] {"--words=" + text, "--out=" + lexicon});
+    return MappedLexicon.map(lexicon);
+  }
+
+  private static List<String> complete(Autocomplete autocomplete, String prefix, int limit) {
+    byte[] letters = new byte[WordList.MAX_SPELLING];
+    int length = Jamo.spell(prefix, letters);
+    String[] out = new String[limit];
+    int found = autocomplete.complete(letters, length, out);
+    return new ArrayList<>(Arrays.asList(out).subList(0, found));
+  }
+
+  @Test
+  public void mapsWordsInSpellingOrder() throws Exception {
+    MappedLexicon lexicon = build(WORDS);
+    WordList words =
+        WordList.read(new ByteArrayInputStream(WORDS.getBytes(StandardCharsets.UTF_8)));
+    assertEquals(9, lexicon.size());
+    for (int i = 0; i < lexicon.size(); i++) {
+      assertEquals(words.get(i).word, lexicon.word(i));
+      assertEquals(words.get(i).frequency, lexicon.frequency(i));
+    }
+  }
+
+  @Test
+  public void completesShortPrefixesFromTheCache() throws Exception {
+    MappedLexicon lexicon = build(WORDS);
+    List<String> expected = Arrays.asList("가족", "강", "가방", "고기");
+    // The first query fills the cache, the second reads it, and a larger request scans again.
+    assertEquals(expected, complete(lexicon, "ㄱ", 4));
+    assertEquals(expected, complete(lexicon, "ㄱ", 4));
+    assertEquals(
+        Arrays.asList("가족", "강", "가방", "고기", "가다", "가게", "가방끈"),
+        complete(lexicon, "ㄱ", MappedLexicon.CACHED_COMPLETIONS + 1));
+    assertEquals(Arrays.asList("가족", "강", "가방"), complete(lexicon, "가", 3));
+    assertEquals(Arrays.asList("나라", "나무"), complete(lexicon, "나", 6));
+    assertEquals(Arrays.asList(), complete(lexicon, "ㅎ", 6));
+  }
+
+  @Test
+  public void completesLongerPrefixes() throws Exception {
+    MappedLexicon lexicon = build(WORDS);
+    assertEquals(Arrays.asList("가방", "가방끈"), complete(lexicon, "가방", 6));
+    assertEquals(Arrays.asList("가방"), complete(lexicon, "가방", 1));
+    assertEquals(Arrays.asList("가족"), complete(lexicon, "가족", 6));
+    assertEquals(Arrays.asList(), complete(lexicon, "가방끈끈", 6));
+  }
+
+  @Test
+  public void agreesWithWordListOnEveryPrefix() throws Exception {
+    MappedLexicon lexicon = build(WORDS);
+    WordList words =
+        WordList.read(new ByteArrayInputStream(WORDS.getBytes(StandardCharsets.UTF_8)));
+    for (int i = 0; i < words.size(); i++) {
+      byte[] spelling = words.get(i).spelling;
+      for (int length = 1; length <= spelling.length; length++) {
+        for (int limit : new int[] {1, 3, MappedLexicon.CACHED_COMPLETIONS + 4}) {
+          String[] expected = new String[limit];
+          String[] actual = new String[limit];
+          int found = words.complete(spelling, length, expected);
+          assertEquals(found, lexicon.complete(spelling, length, actual));
+          assertEquals(
+              Arrays.asList(expected).subList(0, found), Arrays.asList(actual).subList(0, found));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,168 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class MicroBatcherTest {
+  private static final long TIMEOUT_MILLIS = 5000;
+
+  /** Blocks every batch until {@link #release} is counted down. */
+  private static final class StalledClassifier implements Classifier {
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public void classify(float[] features, int count, float[] probabilities) {
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      for (int i = 0; i < count; i++) {
+        probabilities[i * Jamo.COUNT] = 1f;
+      }
+    }
+  }
+
+  @Test
+  public void classifiesRequest() throws Exception {
+    StalledClassifier classifier = new StalledClassifier();
+    classifier.release.countDown();
+    MicroBatcher batcher = new MicroBatcher(new Classifier[] {classifier}, 4, 0, 16);
+    try {
+      MicroBatcher.Request request = new MicroBatcher.Request();
+      batcher.classify(request);
+      assertEquals(1f, request.probabilities()[0], 0f);
+      assertEquals(1, batcher.frames());
+    } finally {
+      batcher.close();
+    }
+  }
+
+  @Test
+  public void classifierFailureFailsRequest() throws Exception {
+    IllegalStateException cause = new IllegalStateException("broken model");
+    AtomicInteger calls = new AtomicInteger();
+    // Throws on the first batch only, so the worker must survive to classify the second.
+    Classifier classifier =
+        (features, count, probabilities) -> {
+          if (calls.getAndIncrement() == 0) {
+            throw cause;
+          }
+          for (int i = 0; i < count; i++) {
+            probabilities[i * Jamo.COUNT + 1] = 1f;
+          }
+        };
+    MicroBatcher batcher = new MicroBatcher(new Classifier[] {classifier}, 4, 0, 16);
+    try {
+      MicroBatcher.Request request = new MicroBatcher.Request();
+      try {
+        batcher.classify(request);
+        fail("classify succeeded although the classifier threw");
+      } catch (RejectedExecutionException expected) {
+        assertSame(cause, expected.getCause());
+      }
+      assertEquals(0, batcher.frames());
+
+      batcher.classify(request);
+      assertEquals(1f, request.probabilities()[1], 0f);
+      assertEquals(1, batcher.frames());
+    } finally {
+      batcher.close();
+    }
+  }
+
+  @Test
+  public void closeFailsRequestWaitingInQueue() throws Exception {
+    StalledClassifier classifier = new StalledClassifier();
+    // One request per batch, so the second one stays queued behind the stalled first.
+    MicroBatcher batcher = new MicroBatcher(new Classifier[] {classifier}, 1, 0, 16);
+    Thread first = startClassify(batcher, new AtomicReference<>());
+    assertTrue(classifier.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    AtomicReference<Throwable> secondError = new AtomicReference<>();
+    Thread second = startClassify(batcher, secondError);
+    waitUntilBlocked(second);
+
+    batcher.close();
+    second.join(TIMEOUT_MILLIS);
+    assertFalse("classify still blocked after close", second.isAlive());
+    assertTrue(secondError.get() instanceof RejectedExecutionException);
+
+    classifier.release.countDown();
+    first.join(TIMEOUT_MILLIS);
+    assertFalse(first.isAlive());
+  }
+
+  @Test
+  public void closeFailsRequestWithoutWorkers() throws Exception {
+    MicroBatcher batcher = new MicroBatcher(new Classifier[0], 4, 0, 16);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread thread = startClassify(batcher, error);
+    waitUntilBlocked(thread);
+
+    batcher.close();
+    thread.join(TIMEOUT_MILLIS);
+    assertFalse("classify still blocked after close", thread.isAlive());
+    assertTrue(error.get() instanceof RejectedExecutionException);
+  }
+
+  @Test
+  public void classifyAfterCloseThrows() throws Exception {
+    MicroBatcher batcher = new MicroBatcher(new Classifier[0], 4, 0, 16);
+    batcher.close();
+    try {
+      batcher.classify(new MicroBatcher.Request());
+      fail("classify succeeded on a closed batcher");
+    } catch (RejectedExecutionException expected) {
+      // Expected.
+    }
+  }
+
+  private static Thread startClassify(MicroBatcher batcher, AtomicReference<Throwable> error) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                batcher.classify(new MicroBatcher.Request());
+              } catch (InterruptedException | RuntimeException e) {
+                error.set(e);
+              }
+            });
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (thread.getState() != Thread.State.WAITING) {
+      assertTrue("classify never blocked", System.currentTimeMillis() < deadline);
+      Thread.sleep(1);
+    }
+  }
+}
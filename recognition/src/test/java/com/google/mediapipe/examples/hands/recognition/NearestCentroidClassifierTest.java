@@ -0,0 +1,192 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+public class NearestCentroidClassifierTest {
+  private static final int SAMPLES_PER_LETTER = 12;
+  private static final int RECORDINGS = 3;
+
+  /** Noise-free features of {@code letter}, a pattern that differs between all 31 letters. */
+  private static void pattern(int letter, float[] out, int offset) {
+    for (int j = 0; j < AngleFeatures.SIZE; j++) {
+      out[offset + j] = 10f * ((letter * 7 + j * 3) % 11) + 4f * ((letter / 11 + j) % 3);
+    }
+  }
+
+  /** {@code SAMPLES_PER_LETTER} noisy samples of every letter, letter by letter. */
+  private static float[] samples(Random random, int[] labels) {
+    float[] features = new float[labels.length * AngleFeatures.SIZE];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = i / SAMPLES_PER_LETTER;
+      pattern(labels[i], features, i * AngleFeatures.SIZE);
+      for (int j = 0; j < AngleFeatures.SIZE; j++) {
+        features[i * AngleFeatures.SIZE + j] += (float) random.nextGaussian();
+      }
+    }
+    return features;
+  }
+
+  @Test
+  public void roundTripsNcc2() throws Exception {
+    int[] labels = new int[Jamo.COUNT * SAMPLES_PER_LETTER];
+    float[] features = samples(new Random(1), labels);
+    NearestCentroidClassifier trained =
+        NearestCentroidClassifier.train(features, labels, labels.length)
+            .withThresholds(0.5f, 50f)
+            .withSharpness(0.25f);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    trained.write(bytes);
+    assertEquals("NCC2", new String(bytes.toByteArray(), 0, 4, StandardCharsets.US_ASCII));
+    NearestCentroidClassifier read =
+        NearestCentroidClassifier.read(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(0.5f, read.acceptRatio(), 0f);
+    assertEquals(50f, read.maxDistance(), 0f);
+    assertEquals(0.25f, read.sharpness(), 0f);
+
+    float[] expected = new float[Jamo.COUNT];
+    float[] actual = new float[Jamo.COUNT];
+    for (int i = 0; i < labels.length; i++) {
+      int offset = i * AngleFeatures.SIZE;
+      boolean confident = trained.classifyOne(features, offset, expected, 0);
+      assertEquals(confident, read.classifyOne(features, offset, actual, 0));
+      assertArrayEquals(expected, actual, 0f);
+      assertEquals(labels[i], read.lastNearest());
+    }
+  }
+
+  @Test
+  public void cascadeShortCircuitsOnlyConfidentFrames() {
+    int[] labels = new int[Jamo.COUNT * SAMPLES_PER_LETTER];
+    float[] features = samples(new Random(2), labels);
+    NearestCentroidClassifier firstStage =
+        NearestCentroidClassifier.train(features, labels, labels.length)
+            .withThresholds(0.5f, 50f);
+    // The model always answers letter 0 with certainty, so escalated frames are recognizable.
+    int[] modelCalls = new int[1];
+    Classifier model =
+        (input, count, probabilities) -> {
+          modelCalls[0] += count;
+          for (int i = 0; i < count; i++) {
+            probabilities[i * Jamo.COUNT] = 1f;
+          }
+        };
+    CascadeClassifier cascade = new CascadeClassifier(firstStage, model);
+
+    // A sample close to its centroid, halfway between two centroids, and far from all of them.
+    float[] frames = new float[3 * AngleFeatures.SIZE];
+    System.arraycopy(
+        features, 5 * SAMPLES_PER_LETTER * AngleFeatures.SIZE, frames, 0, AngleFeatures.SIZE);
+    float[] other = new float[AngleFeatures.SIZE];
+    pattern(3, frames, AngleFeatures.SIZE);
+    pattern(4, other, 0);
+    for (int j = 0; j < AngleFeatures.SIZE; j++) {
+      frames[AngleFeatures.SIZE + j] = (frames[AngleFeatures.SIZE + j] + other[j]) / 2;
+      frames[2 * AngleFeatures.SIZE + j] = 1000f;
+    }
+    float[] probabilities = new float[3 * Jamo.COUNT];
+    cascade.classify(frames, 3, probabilities);
+
+    assertEquals(2, modelCalls[0]);
+    assertEquals(2, cascade.escalated());
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      assertTrue(c == 5 || probabilities[c] < probabilities[5]);
+    }
+    assertEquals(1f, probabilities[Jamo.COUNT], 0f);
+    assertEquals(1f, probabilities[2 * Jamo.COUNT], 0f);
+  }
+
+  @Test
+  public void calibratesThresholdsOnRecordedFrames() throws Exception {
+    Random random = new Random(3);
+    int[] labels = new int[Jamo.COUNT * SAMPLES_PER_LETTER];
+    StringWriter csv = new StringWriter();
+    float[] modelProbabilities = new float[Jamo.COUNT];
+    for (int r = 0; r < RECORDINGS; r++) {
+      RecordedFrames.writeRecordingStart(csv, "take " + r);
+      float[] features = samples(random, labels);
+      for (int i = 0; i < labels.length; i++) {
+        // A model that is right on all but every tenth frame, and fairly sure of itself.
+        int modelLabel = i % 10 == 9 ? (labels[i] + 1) % Jamo.COUNT : labels[i];
+        Arrays.fill(modelProbabilities, 0.1f / (Jamo.COUNT - 1));
+        modelProbabilities[modelLabel] = 0.9f;
+        RecordedFrames.write(
+            csv, labels[i], modelLabel, features, i * AngleFeatures.SIZE, modelProbabilities, 0);
+      }
+    }
+    RecordedFrames frames =
+        RecordedFrames.read(
+            new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+    assertEquals(RECORDINGS * labels.length, frames.count);
+    assertEquals(RECORDINGS, frames.numRecordings);
+
+    boolean[] held = new boolean[frames.count];
+    int[] fitLabels = new int[frames.count];
+    for (int i = 0; i < frames.count; i++) {
+      held[i] = CascadeEvaluation.isHeldOut(frames.recordings[i], frames.numRecordings);
+      fitLabels[i] = frames.labels[i];
+    }
+    assertFalse(held[0]);
+    assertTrue(held[frames.count - 1]);
+    NearestCentroidClassifier centroids =
+        CascadeEvaluation.calibrate(
+            NearestCentroidClassifier.train(frames.features, fitLabels, frames.count),
+            frames,
+            held,
+            0.995f);
+    assertTrue(centroids.acceptRatio() > 0f);
+    assertTrue(centroids.acceptRatio() < 1f);
+    assertTrue(centroids.sharpness() > 0f);
+
+    // The first stage answers most held-out frames, and only where its threshold allows.
+    float[] scratch = new float[Jamo.COUNT];
+    int answered = 0;
+    int heldOut = 0;
+    for (int i = 0; i < frames.count; i++) {
+      if (!held[i]) {
+        continue;
+      }
+      heldOut++;
+      float[] nearestAndRatio =
+          centroids.nearestAndRatio(frames.features, i * AngleFeatures.SIZE, scratch);
+      boolean confident =
+          centroids.classifyOne(frames.features, i * AngleFeatures.SIZE, scratch, 0);
+      assertEquals(
+          nearestAndRatio[0] <= centroids.maxDistance()
+              && nearestAndRatio[1] <= centroids.acceptRatio(),
+          confident);
+      if (confident) {
+        answered++;
+      }
+    }
+    assertTrue(answered > heldOut / 2);
+    CascadeEvaluation.Report report = CascadeEvaluation.evaluate(centroids, frames, held);
+    assertEquals(heldOut, report.frames);
+    assertTrue(report.cascadeAccuracy() >= report.modelAccuracy());
+  }
+}
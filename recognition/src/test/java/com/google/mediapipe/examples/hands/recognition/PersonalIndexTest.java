@@ -0,0 +1,102 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersonalIndexTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  /** A vector with every feature equal to {@code value}. */
+  private static float[] vector(float value) {
+    float[] features = new float[AngleFeatures.SIZE];
+    Arrays.fill(features, value);
+    return features;
+  }
+
+  @Test
+  public void savesMapsAndFindsNearestSamples() throws Exception {
+    PersonalIndex index = new PersonalIndex();
+    // More samples than the initial capacity of 16, and a label count that needs padding.
+    for (int i = 0; i < 21; i++) {
+      index.add(vector(i), 0, i % 3);
+    }
+    File file = folder.newFile("personal_index.bin");
+    index.save(file);
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      byte[] magic = new byte[4];
+      raf.readFully(magic);
+      assertArrayEquals(new byte[] {'P', 'K', 'N', '1'}, magic);
+      assertEquals(16 + 24 + 21 * AngleFeatures.SIZE * 4, raf.length());
+    }
+
+    PersonalIndex mapped = PersonalIndex.map(file);
+    assertEquals(21, mapped.size());
+    assertEquals(7, mapped.count(2));
+    int[] indices = new int[3];
+    float[] distances = new float[3];
+    assertEquals(3, mapped.nearest(vector(10.2f), 0, indices, distances));
+    assertArrayEquals(new int[] {10, 11, 9}, indices);
+    assertEquals(1, mapped.label(indices[0]));
+    assertEquals(AngleFeatures.SIZE * 0.2f * 0.2f, distances[0], 1e-3f);
+    assertEquals(AngleFeatures.SIZE * 0.8f * 0.8f, distances[1], 1e-3f);
+  }
+
+  @Test
+  public void copyIsIndependentOfTheOriginal() throws Exception {
+    PersonalIndex index = new PersonalIndex();
+    index.add(vector(1f), 0, 4);
+    index.add(vector(2f), 0, 5);
+    PersonalIndex copy = index.copy();
+    index.removeLabel(4);
+    index.add(vector(3f), 0, 6);
+
+    assertEquals(2, copy.size());
+    assertEquals(4, copy.label(0));
+    assertEquals(5, copy.label(1));
+    assertEquals(2, index.size());
+    assertEquals(5, index.label(0));
+    assertEquals(6, index.label(1));
+  }
+
+  @Test
+  public void mappedIndexCanBeChangedAndSavedAgain() throws Exception {
+    PersonalIndex index = new PersonalIndex();
+    index.add(vector(1f), 0, 1);
+    index.add(vector(2f), 0, 2);
+    File file = folder.newFile("personal_index.bin");
+    index.save(file);
+
+    PersonalIndex mapped = PersonalIndex.map(file);
+    mapped.removeLabel(1);
+    mapped.add(vector(5f), 0, 3);
+    mapped.save(file);
+
+    PersonalIndex reread = PersonalIndex.map(file);
+    assertEquals(2, reread.size());
+    int[] indices = new int[1];
+    float[] distances = new float[1];
+    reread.nearest(vector(4.9f), 0, indices, distances);
+    assertEquals(3, reread.label(indices[0]));
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2021 The MediaPipe Authors.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//      http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.mediapipe.examples.hands.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SwappableClassifierTest {
+  /** Scores every vector as its own letter and records whether it was closed. */
+  private static final class LetterClassifier implements Classifier, AutoCloseable {
+    final int letter;
+    boolean closed;
+
+    LetterClassifier(int letter) {
+      this.letter = letter;
+    }
+
+    @Override
+    public void classify(float[] features, int count, float[] probabilities) {
+      for (int i = 0; i < count; i++) {
+        probabilities[i * Jamo.COUNT + letter] = 1f;
+      }
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static int classify(Classifier classifier) {
+    float[] probabilities = new float[Jamo.COUNT];
+    classifier.classify(new float[AngleFeatures.SIZE], 1, probabilities);
+    for (int c = 0; c < Jamo.COUNT; c++) {
+      if (probabilities[c] == 1f) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  @Test
+  public void rollbackClosesRejectedModelAndForgetsIt() {
+    LetterClassifier first = new LetterClassifier(1);
+    LetterClassifier second = new LetterClassifier(2);
+    SwappableClassifier classifier = new SwappableClassifier(first, "v1");
+    classifier.offer(second, "v2");
+    assertEquals(2, classify(classifier));
+
+    assertEquals("v2", classifier.rollback());
+    assertEquals(1, classify(classifier));
+    assertEquals("v1", classifier.version());
+    assertTrue(second.closed);
+    assertFalse(first.closed);
+    // The rejected model is not a rollback target.
+    assertNull(classifier.rollback());
+    assertEquals(1, classify(classifier));
+  }
+
+  @Test
+  public void rollbackDropsPendingModel() {
+    LetterClassifier first = new LetterClassifier(1);
+    LetterClassifier second = new LetterClassifier(2);
+    LetterClassifier third = new LetterClassifier(3);
+    SwappableClassifier classifier = new SwappableClassifier(first, "v1");
+    classifier.offer(second, "v2");
+    assertEquals(2, classify(classifier));
+    classifier.offer(third, "v3");
+
+    assertEquals("v3", classifier.rollback());
+    assertTrue(third.closed);
+    assertEquals(2, classify(classifier));
+    assertEquals("v2", classifier.version());
+  }
+
+  @Test
+  public void offerAfterRollbackIsSwappedInAfterIt() {
+    LetterClassifier first = new LetterClassifier(1);
+    LetterClassifier second = new LetterClassifier(2);
+    LetterClassifier third = new LetterClassifier(3);
+    SwappableClassifier classifier = new SwappableClassifier(first, "v1");
+    classifier.offer(second, "v2");
+    assertEquals(2, classify(classifier));
+
+    assertEquals("v2", classifier.rollback());
+    classifier.offer(third, "v3");
+    assertEquals(3, classify(classifier));
+    assertTrue(second.closed);
+    assertEquals("v3", classifier.rollback());
+    assertEquals(1, classify(classifier));
+  }
+
+  @Test
+  public void closeClosesEveryModelAndLaterOffers() {
+    LetterClassifier first = new LetterClassifier(1);
+    LetterClassifier second = new LetterClassifier(2);
+    LetterClassifier third = new LetterClassifier(3);
+    LetterClassifier late = new LetterClassifier(4);
+    SwappableClassifier classifier = new SwappableClassifier(first, "v1");
+    classifier.offer(second, "v2");
+    assertEquals(2, classify(classifier));
+    classifier.offer(third, "v3");
+
+    classifier.close();
+    assertTrue(first.closed);
+    assertTrue(second.closed);
+    assertTrue(third.closed);
+    // A model still loading when the classifier was closed is closed when offered.
+    classifier.offer(late, "v4");
+    assertTrue(late.closed);
+    assertEquals("v2", classifier.version());
+  }
+}